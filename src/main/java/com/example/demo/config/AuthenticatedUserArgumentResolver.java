@@ -0,0 +1,50 @@
+package com.example.demo.config;
+
+import com.example.demo.model.AuthenticatedUser;
+import com.example.demo.service.AuthenticatedUserService;
+import com.example.demo.service.JwtTokenService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Paramètre de contrôleur de type {@link AuthenticatedUser} : construit depuis les claims déjà
+ * vérifiés par JwtAuthenticationFilter et le résumé en cache, sans requête sur la table user.
+ * 401 sans jeton valide, 403 pour un compte non vérifié
+ */
+@Component
+@RequiredArgsConstructor
+public class AuthenticatedUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final AuthenticatedUserService authenticatedUserService;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return AuthenticatedUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public AuthenticatedUser resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                             NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        Claims claims = request != null ? JwtAuthenticationFilter.claims(request) : null;
+        Long userId = claims != null ? JwtTokenService.userId(claims) : null;
+        if (userId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token d'authentification manquant ou invalide");
+        }
+        AuthenticatedUser user = authenticatedUserService.getById(userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Utilisateur non trouvé"));
+        if (!user.verified()) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Compte non vérifié");
+        }
+        return user;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.config;
+
+import com.example.demo.service.JwtTokenService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Vérifie le jeton "Authorization: Bearer" une seule fois par requête et dépose ses claims
+ * dans l'attribut {@link #CLAIMS_ATTRIBUTE}. Un jeton absent ou invalide ne bloque pas la requête :
+ * les routes restent ouvertes (voir SecurityConfig), chaque contrôleur décide
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String CLAIMS_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".claims";
+
+    private final JwtTokenService jwtTokenService;
+
+    public JwtAuthenticationFilter(JwtTokenService jwtTokenService) {
+        this.jwtTokenService = jwtTokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            jwtTokenService.verifier(header.substring(7)).ifPresent(claims -> authentifier(request, claims));
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void authentifier(HttpServletRequest request, Claims claims) {
+        request.setAttribute(CLAIMS_ATTRIBUTE, claims);
+        String role = JwtTokenService.role(claims);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                claims.get("phoneNumber"), null,
+                role == null ? List.of() : List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
+    /**
+     * Claims vérifiés de la requête courante, null sans jeton valide
+     */
+    public static Claims claims(HttpServletRequest request) {
+        return (Claims) request.getAttribute(CLAIMS_ATTRIBUTE);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.config;
 
+import com.example.demo.service.JwtTokenService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -7,13 +8,14 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 
 
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtTokenService jwtTokenService) throws Exception {
         http.csrf().disable()  // Désactive la protection CSRF si nécessaire (surtout pour les API)
                 .authorizeRequests()
                 .requestMatchers("/**").permitAll()  // Remplacé antMatchers par requestMatchers
@@ -22,6 +24,9 @@ public class SecurityConfig {
                 .exceptionHandling()
                 .accessDeniedPage("/accessDenied"); // Redirection en cas de permission refusée
 
+        // Jeton vérifié une fois par requête ; pas déclaré en @Component pour ne pas être enregistré deux fois
+        http.addFilterBefore(new JwtAuthenticationFilter(jwtTokenService), UsernamePasswordAuthenticationFilter.class);
+
         // Log pour confirmer la configuration de sécurité
         System.out.println("Sécurité désactivée pour toutes les routes.");
 
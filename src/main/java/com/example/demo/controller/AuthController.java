@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import com.example.demo.service.JwtTokenService;
+import com.example.demo.service.RateLimiterService;
 import com.example.demo.service.UserService;
 import io.jsonwebtoken.io.IOException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -39,10 +40,15 @@ public class AuthController {
 
     private final JwtTokenService jwtTokenService;
     private final UserService userService;
+    private final RateLimiterService rateLimiterService;
 
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody @Valid PhoneNumberRequest request) {
+    public ResponseEntity<?> registerUser(@RequestBody @Valid PhoneNumberRequest request,
+                                          HttpServletRequest httpRequest) {
+        // Limites vérifiées avant toute écriture en base et tout envoi de SMS (429 hors du try)
+        rateLimiterService.exiger("register-ip", rateLimiterService.clientIp(httpRequest));
+        rateLimiterService.exiger("register-phone", RateLimiterService.telephone(request.getPhoneNumber()));
         try {
             String code = userService.sendVerificationCode(request.getPhoneNumber(), String.valueOf(request.getRole()));
             log.info("Code de vérification envoyé: {}", request.getPhoneNumber());
@@ -66,7 +72,9 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody @Valid LoginRequest request) {
+    public ResponseEntity<?> login(@RequestBody @Valid LoginRequest request, HttpServletRequest httpRequest) {
+        rateLimiterService.exiger("login-ip", rateLimiterService.clientIp(httpRequest));
+        rateLimiterService.exiger("login-phone", RateLimiterService.telephone(request.getPhoneNumber()));
         try {
             String loginCode = userService.sendLoginCode(request.getPhoneNumber());
             return ResponseEntity.ok(new CodeResponse(loginCode));
@@ -93,7 +101,7 @@ public class AuthController {
                 response.put("userId", user.getId());
                 response.put("firstName", user.getFirstName());
                 response.put("phoneNumber", user.getPhoneNumber());
-                response.put("photo", user.getPhoto());
+                response.put("photo", userService.getUserPhoto(user));
                 response.put("email", user.getEmail());  // Ajout de l'email
 
                 return ResponseEntity.ok(response);
@@ -147,11 +155,7 @@ public class AuthController {
         try {
             // Récupération des gyms et des informations supplémentaires (type de coaching et bio)
             List<UserService.GymProfileDto> gyms = userService.getAllGyms().stream()
-                    .map(user -> new UserService.GymProfileDto(
-                            user,
-                            user.getTypeCoaching(), // Récupérer le type de coaching
-                            user.getBio()           // Récupérer la biographie
-                    ))
+                    .map(userService::toGymProfileDto) // Type de coaching, biographie et photo
                     .collect(Collectors.toList()); // Utiliser collect pour bien transformer le stream en liste
 
             if (gyms.isEmpty()) {
@@ -176,6 +180,19 @@ public class AuthController {
             return ResponseEntity.ok(userService.getCoachById(id));
         }
 
+    /**
+     * Photo de profil d'un utilisateur, servie depuis le stockage média
+     */
+    @GetMapping("/users/{id}/photo")
+    public ResponseEntity<byte[]> getUserPhoto(@PathVariable Long id) {
+        return userService.getUserById(id)
+                .map(userService::getUserPhoto)
+                .map(photo -> ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .body(photo))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
 
 
 
@@ -347,7 +364,11 @@ public class AuthController {
     // Dans AuthController.java, ajoutez ces méthodes modifiées :
 
     @PostMapping("/initiate-phone-change")
-    public ResponseEntity<?> initiatePhoneNumberChange(@RequestBody @Valid PhoneChangeRequestNoToken request) {
+    public ResponseEntity<?> initiatePhoneNumberChange(@RequestBody @Valid PhoneChangeRequestNoToken request,
+                                                       HttpServletRequest httpRequest) {
+        rateLimiterService.exiger("phone-change-ip", rateLimiterService.clientIp(httpRequest));
+        rateLimiterService.exiger("phone-change-phone", RateLimiterService.telephone(request.getCurrentPhoneNumber()));
+        rateLimiterService.exiger("phone-change-phone", RateLimiterService.telephone(request.getNewPhoneNumber()));
         try {
             String code = userService.initiatePhoneNumberChange(
                     request.getCurrentPhoneNumber(),
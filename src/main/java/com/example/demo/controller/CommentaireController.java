@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import com.example.demo.model.Commentaire;
 import com.example.demo.model.User;
 import com.example.demo.service.CommentaireService;
+import com.example.demo.service.MediaBlobStore;
 import com.example.demo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -21,11 +22,14 @@ public class CommentaireController {
 
     private final CommentaireService commentaireService;
     private final UserService userService;
+    private final MediaBlobStore mediaBlobStore;
 
     @Autowired
-    public CommentaireController(CommentaireService commentaireService, UserService userService) {
+    public CommentaireController(CommentaireService commentaireService, UserService userService,
+                                 MediaBlobStore mediaBlobStore) {
         this.commentaireService = commentaireService;
         this.userService = userService;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     // Ajouter un commentaire avec les IDs dans l'URL
@@ -55,13 +59,13 @@ public class CommentaireController {
             nouveauCommentaire.setUtilisateur(utilisateur.get());
             nouveauCommentaire.setRecepteur(recepteur.get());
 
-            // Ajouter les images si elles sont fournies
+            // Ajouter les images si elles sont fournies (stockées sur disque, plus en BLOB)
             if (imageAvant != null && !imageAvant.isEmpty()) {
-                nouveauCommentaire.setImageAvant(imageAvant.getBytes());
+                nouveauCommentaire.setImageAvantPath(mediaBlobStore.store(imageAvant.getBytes()));
             }
 
             if (imageApres != null && !imageApres.isEmpty()) {
-                nouveauCommentaire.setImageApres(imageApres.getBytes());
+                nouveauCommentaire.setImageApresPath(mediaBlobStore.store(imageApres.getBytes()));
             }
 
             // Enregistrer le commentaire
@@ -105,15 +109,17 @@ public class CommentaireController {
             commentaireMap.put("recepteur", recepteurMap);
 
             // Indique si les images sont disponibles
-            commentaireMap.put("hasImageAvant", commentaire.getImageAvant() != null && commentaire.getImageAvant().length > 0);
-            commentaireMap.put("hasImageApres", commentaire.getImageApres() != null && commentaire.getImageApres().length > 0);
+            boolean hasImageAvant = mediaBlobStore.exists(commentaire.getImageAvant(), commentaire.getImageAvantPath());
+            boolean hasImageApres = mediaBlobStore.exists(commentaire.getImageApres(), commentaire.getImageApresPath());
+            commentaireMap.put("hasImageAvant", hasImageAvant);
+            commentaireMap.put("hasImageApres", hasImageApres);
 
             // URLs pour accéder aux images
-            if (commentaire.getImageAvant() != null && commentaire.getImageAvant().length > 0) {
+            if (hasImageAvant) {
                 commentaireMap.put("imageAvantUrl", "/api/commentaires/" + commentaire.getId() + "/image-avant");
             }
 
-            if (commentaire.getImageApres() != null && commentaire.getImageApres().length > 0) {
+            if (hasImageApres) {
                 commentaireMap.put("imageApresUrl", "/api/commentaires/" + commentaire.getId() + "/image-apres");
             }
 
@@ -148,11 +154,13 @@ public class CommentaireController {
     // Récupérer l'image avant d'un commentaire
     @GetMapping("/{id}/image-avant")
     public ResponseEntity<byte[]> getImageAvant(@PathVariable Long id) {
-        Optional<Commentaire> commentaire = commentaireService.getCommentaireParId(id);
-        if (commentaire.isPresent() && commentaire.get().getImageAvant() != null) {
+        byte[] image = commentaireService.getCommentaireParId(id)
+                .map(c -> mediaBlobStore.resolve(c.getImageAvant(), c.getImageAvantPath()))
+                .orElse(null);
+        if (image != null) {
             return ResponseEntity.ok()
                     .contentType(MediaType.IMAGE_JPEG)
-                    .body(commentaire.get().getImageAvant());
+                    .body(image);
         }
         return ResponseEntity.notFound().build();
     }
@@ -160,11 +168,13 @@ public class CommentaireController {
     // Récupérer l'image après d'un commentaire
     @GetMapping("/{id}/image-apres")
     public ResponseEntity<byte[]> getImageApres(@PathVariable Long id) {
-        Optional<Commentaire> commentaire = commentaireService.getCommentaireParId(id);
-        if (commentaire.isPresent() && commentaire.get().getImageApres() != null) {
+        byte[] image = commentaireService.getCommentaireParId(id)
+                .map(c -> mediaBlobStore.resolve(c.getImageApres(), c.getImageApresPath()))
+                .orElse(null);
+        if (image != null) {
             return ResponseEntity.ok()
                     .contentType(MediaType.IMAGE_JPEG)
-                    .body(commentaire.get().getImageApres());
+                    .body(image);
         }
         return ResponseEntity.notFound().build();
     }
@@ -204,11 +214,13 @@ public class CommentaireController {
 
             // Mise à jour des images si fournies
             if (imageAvant != null && !imageAvant.isEmpty()) {
-                commentaireToUpdate.setImageAvant(imageAvant.getBytes());
+                commentaireToUpdate.setImageAvantPath(mediaBlobStore.store(imageAvant.getBytes()));
+                commentaireToUpdate.setImageAvant(null);
             }
 
             if (imageApres != null && !imageApres.isEmpty()) {
-                commentaireToUpdate.setImageApres(imageApres.getBytes());
+                commentaireToUpdate.setImageApresPath(mediaBlobStore.store(imageApres.getBytes()));
+                commentaireToUpdate.setImageApres(null);
             }
 
             Commentaire updatedCommentaire = commentaireService.mettreAJourCommentaire(id, commentaireToUpdate);
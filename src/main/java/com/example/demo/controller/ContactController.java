@@ -1,8 +1,13 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.JwtAuthenticationFilter;
 import com.example.demo.service.ContactService;
 import com.example.demo.service.ContactService.ContactMessageDTO;
 import com.example.demo.service.ContactService.ContactMessageResponseDTO;
+import com.example.demo.service.JwtTokenService;
+import com.example.demo.service.RateLimiterService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -23,6 +28,7 @@ import java.util.Map;
 public class ContactController {
 
     private final ContactService contactService;
+    private final RateLimiterService rateLimiterService;
 
     /**
      * Crée un nouveau message de contact avec les IDs du coach et du gymzer dans les en-têtes
@@ -32,7 +38,8 @@ public class ContactController {
     public ResponseEntity<Map<String, Object>> createContactMessage(
             @RequestHeader(value = "X-Coach-Id", required = false) Long coachId,
             @RequestHeader(value = "X-Gymzer-Id", required = false) Long gymzerId,
-            @Valid @RequestBody ContactMessageDTO contactMessageDTO) {
+            @Valid @RequestBody ContactMessageDTO contactMessageDTO,
+            HttpServletRequest request) {
 
         // Définir les IDs à partir des en-têtes s'ils sont présents
         if (coachId != null) {
@@ -42,6 +49,7 @@ public class ContactController {
         if (gymzerId != null) {
             contactMessageDTO.setGymzerId(gymzerId);
         }
+        limiter(request);
 
         ContactMessageResponseDTO savedMessage = contactService.createContactMessage(contactMessageDTO);
 
@@ -60,10 +68,12 @@ public class ContactController {
     public ResponseEntity<Map<String, Object>> sendMessageBetweenCoachAndGymzer(
             @PathVariable Long coachId,
             @PathVariable Long gymzerId,
-            @Valid @RequestBody ContactMessageDTO contactMessageDTO) {
+            @Valid @RequestBody ContactMessageDTO contactMessageDTO,
+            HttpServletRequest request) {
         // Définir explicitement les IDs du coach et du gymzer
         contactMessageDTO.setCoachId(coachId);
         contactMessageDTO.setGymzerId(gymzerId);
+        limiter(request);
 
         ContactMessageResponseDTO savedMessage = contactService.createContactMessage(contactMessageDTO);
 
@@ -75,6 +85,17 @@ public class ContactController {
                 ));
     }
 
+    // Par utilisateur du jeton vérifié, par adresse IP sans jeton ; avant toute écriture en base
+    private void limiter(HttpServletRequest request) {
+        Claims claims = JwtAuthenticationFilter.claims(request);
+        Long userId = claims != null ? JwtTokenService.userId(claims) : null;
+        if (userId != null) {
+            rateLimiterService.exiger("contact-user", userId.toString());
+        } else {
+            rateLimiterService.exiger("contact-ip", rateLimiterService.clientIp(request));
+        }
+    }
+
     /**
      * Récupère tous les messages d'un coach avec pagination
      */
@@ -124,6 +145,47 @@ public class ContactController {
         ));
     }
 
+    /**
+     * Marque comme lus tous les messages d'un coach
+     */
+    @PatchMapping("/coach/{coachId}/read-all")
+    public ResponseEntity<Map<String, Object>> markAllAsRead(@PathVariable Long coachId) {
+        int count = contactService.markAllAsRead(coachId);
+
+        return ResponseEntity.ok(Map.of(
+                "message", "Messages marqués comme lus avec succès",
+                "count", count
+        ));
+    }
+
+    /**
+     * Marque comme lus les messages d'un coach jusqu'à l'ID donné (inclus)
+     */
+    @PatchMapping("/coach/{coachId}/read-up-to/{messageId}")
+    public ResponseEntity<Map<String, Object>> markAsReadUpTo(@PathVariable Long coachId,
+                                                              @PathVariable Long messageId) {
+        int count = contactService.markAsReadUpTo(coachId, messageId);
+
+        return ResponseEntity.ok(Map.of(
+                "message", "Messages marqués comme lus avec succès",
+                "count", count
+        ));
+    }
+
+    /**
+     * Marque comme lus une liste de messages d'un coach
+     */
+    @PatchMapping("/coach/{coachId}/read")
+    public ResponseEntity<Map<String, Object>> markListAsRead(@PathVariable Long coachId,
+                                                              @RequestBody List<Long> messageIds) {
+        int count = contactService.markAsRead(coachId, messageIds);
+
+        return ResponseEntity.ok(Map.of(
+                "message", "Messages marqués comme lus avec succès",
+                "count", count
+        ));
+    }
+
     /**
      * Compte les messages non lus pour un coach
      */
@@ -161,7 +223,10 @@ public class ContactController {
         Map<String, Object> errorResponse = new HashMap<>();
         HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
 
-        if (e instanceof org.springframework.web.server.ResponseStatusException rsEx) {
+        if (e instanceof RateLimiterService.RateLimitExceededException rateLimitEx) {
+            status = HttpStatus.TOO_MANY_REQUESTS;
+            errorResponse.put("error", rateLimitEx.getReason());
+        } else if (e instanceof org.springframework.web.server.ResponseStatusException rsEx) {
             status = rsEx.getStatusCode().is4xxClientError()
                     ? HttpStatus.BAD_REQUEST
                     : HttpStatus.INTERNAL_SERVER_ERROR;
@@ -180,6 +245,9 @@ public class ContactController {
         errorResponse.put("timestamp", java.time.LocalDateTime.now());
         errorResponse.put("status", status.value());
 
+        if (e instanceof RateLimiterService.RateLimitExceededException rateLimitEx) {
+            return ResponseEntity.status(status).headers(rateLimitEx.getHeaders()).body(errorResponse);
+        }
         return ResponseEntity.status(status).body(errorResponse);
     }
 }
\ No newline at end of file
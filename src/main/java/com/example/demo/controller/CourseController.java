@@ -4,8 +4,13 @@ import com.example.demo.model.*;
 import com.example.demo.repository.CourseRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.service.CourseService;
+import com.example.demo.service.ImageDerivativeService;
+import com.example.demo.service.MediaStreamingService;
 import com.example.demo.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
@@ -28,17 +33,20 @@ public class CourseController {
     private final UserService userService;
     private final UserRepository userRepository;
     private final CourseRepository courseRepository;
+    private final MediaStreamingService mediaStreamingService;
 
     @Autowired
     public CourseController(
             CourseService courseService,
             UserService userService,
-            UserRepository userRepository, CourseRepository courseRepository
+            UserRepository userRepository, CourseRepository courseRepository,
+            MediaStreamingService mediaStreamingService
     ) {
         this.courseService = courseService;
         this.userService = userService;
         this.userRepository = userRepository;
         this.courseRepository = courseRepository;
+        this.mediaStreamingService = mediaStreamingService;
     }
 
     /**
@@ -163,25 +171,29 @@ public class CourseController {
      * Récupérer la miniature d'un cours
      */
     @GetMapping("/{courseId}/thumbnail")
-    public ResponseEntity<byte[]> getCourseThumbnail(@PathVariable Long courseId) {
+    public ResponseEntity<Resource> getCourseThumbnail(
+            @PathVariable Long courseId,
+            @RequestParam(value = "size", required = false) String size) {
         try {
-            byte[] thumbnailData = courseService.getCourseThumbnail(courseId);
+            ImageDerivativeService.Image thumbnail = courseService.getCourseThumbnail(courseId, size);
 
-            if (thumbnailData == null) {
+            if (thumbnail == null) {
                 return ResponseEntity.notFound().build();
             }
 
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_JPEG); // Ajuster selon le type d'image
+            headers.setContentType(thumbnail.mediaType());
             headers.setContentDisposition(
                     ContentDisposition.inline()
-                            .filename("course_thumbnail_" + courseId + ".jpg")
+                            .filename("course_thumbnail_" + courseId + "." + thumbnail.mediaType().getSubtype())
                             .build()
             );
 
-            return new ResponseEntity<>(thumbnailData, headers, HttpStatus.OK);
+            return new ResponseEntity<>(thumbnail.content(), headers, HttpStatus.OK);
         } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -336,40 +348,39 @@ public class CourseController {
 
     /**
      * Récupérer la vidéo d'un exercice
+     * Supporte les requêtes Range (simples et multiples) et If-Range pour le seek sur mobile
      */
     @GetMapping("/exercises/{exerciseId}/video")
-    public ResponseEntity<byte[]> getExerciseVideo(@PathVariable Long exerciseId) {
+    public void getExerciseVideo(
+            @PathVariable Long exerciseId,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
         try {
-            Optional<CourseExercise> exerciseOpt = courseService.getExerciseById(exerciseId);
+            Path videoFile = courseService.getExerciseVideoFile(exerciseId);
 
-            if (exerciseOpt.isEmpty() || exerciseOpt.get().getVideo() == null) {
-                return ResponseEntity.notFound().build();
+            if (videoFile == null) {
+                response.sendError(HttpStatus.NOT_FOUND.value());
+                return;
             }
 
-            byte[] videoBytes = courseService.getExerciseVideoBytes(exerciseId);
-
-            if (videoBytes == null) {
-                return ResponseEntity.notFound().build();
-            }
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("video/mp4"));
             // Headers CORS importants pour iOS
-            headers.add("Access-Control-Allow-Origin", "*");
-            headers.add("Access-Control-Allow-Methods", "GET, OPTIONS");
-            headers.add("Access-Control-Allow-Headers", "Content-Type, Accept");
-            // Headers importants pour le streaming
-            headers.add("Accept-Ranges", "bytes");
-            headers.setContentLength(videoBytes.length);
-            headers.setContentDisposition(
-                    ContentDisposition.inline()
-                            .filename("exercise_video_" + exerciseId + ".mp4")
-                            .build()
+            response.setHeader("Access-Control-Allow-Origin", "*");
+            response.setHeader("Access-Control-Allow-Methods", "GET, HEAD, OPTIONS");
+            response.setHeader("Access-Control-Allow-Headers", "Content-Type, Accept, Range, If-Range");
+            response.setHeader("Access-Control-Expose-Headers", "Accept-Ranges, Content-Range, Content-Length, ETag");
+
+            mediaStreamingService.stream(
+                    videoFile,
+                    "video/mp4",
+                    "exercise_video_" + exerciseId + ".mp4",
+                    request,
+                    response
             );
-
-            return new ResponseEntity<>(videoBytes, headers, HttpStatus.OK);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            if (!response.isCommitted()) {
+                response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -1,17 +1,17 @@
 package com.example.demo.controller;
 
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Event;
 import com.example.demo.service.EventService;
-import com.example.demo.service.JwtTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -26,9 +26,6 @@ public class EventController {
     @Autowired
     private EventService eventService;
 
-    @Autowired
-    private JwtTokenService jwtTokenService;
-
     @PostMapping("/creer")
     public ResponseEntity<?> creerEvent(
             @RequestParam("titre") String titre,
@@ -40,10 +37,9 @@ public class EventController {
             @RequestParam("description") String description,
             @RequestParam("reglement") String reglement,
             @RequestParam(value = "photo", required = false) MultipartFile photo, // Handle photo upload
-            HttpServletRequest request
+            AuthenticatedUser utilisateur
     ) {
         try {
-            String phoneNumber = extractPhoneNumberFromToken(request);
 
             // Construct the EventDto manually using the request parameters
             EventService.EventDto eventDto = new EventService.EventDto();
@@ -62,7 +58,7 @@ public class EventController {
                 eventDto.setPhoto(photoBytes);
             }
 
-            Event event = eventService.createEvent(phoneNumber, eventDto);
+            Event event = eventService.createEvent(utilisateur, eventDto);
             return ResponseEntity.ok(event);
         } catch (IllegalArgumentException e) {
             logger.warn("Erreur de validation: {}", e.getMessage());
@@ -79,16 +75,6 @@ public class EventController {
         }
     }
 
-    private String extractPhoneNumberFromToken(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new IllegalArgumentException("Token d'authentification manquant ou invalide");
-        }
-
-        String token = authHeader.substring(7);
-        return jwtTokenService.extractPhoneNumber(token);
-    }
-
     private void validateEventDto(EventService.EventDto eventDto) {
         if (eventDto.getTitre() == null || eventDto.getTitre().trim().isEmpty()) {
             throw new IllegalArgumentException("Le titre de l'événement est obligatoire");
@@ -126,11 +112,28 @@ public class EventController {
         }
     }
 
+    /**
+     * Photo d'un événement, servie depuis le stockage média
+     */
+    @GetMapping("/{id}/photo")
+    public ResponseEntity<Resource> getEventPhoto(
+            @PathVariable Long id,
+            @RequestParam(value = "size", required = false) String size) {
+        try {
+            return eventService.getEventPhoto(id, size)
+                    .map(photo -> ResponseEntity.ok()
+                            .contentType(photo.mediaType())
+                            .body(photo.content()))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/mes-events")
-    public ResponseEntity<?> getEventsUtilisateur(HttpServletRequest request) {
+    public ResponseEntity<?> getEventsUtilisateur(AuthenticatedUser utilisateur) {
         try {
-            String phoneNumber = extractPhoneNumberFromToken(request);
-            List<Event> events = eventService.getEventsUtilisateur(phoneNumber);
+            List<Event> events = eventService.getEventsUtilisateur(utilisateur.id());
             return ResponseEntity.ok(events);
         } catch (Exception e) {
             logger.error("Erreur récupération événements utilisateur", e);
@@ -140,18 +143,17 @@ public class EventController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> supprimerEvent(@PathVariable Long id, HttpServletRequest request) {
+    public ResponseEntity<?> supprimerEvent(@PathVariable Long id, AuthenticatedUser utilisateur) {
         try {
-            String phoneNumber = extractPhoneNumberFromToken(request);
             Event event = eventService.getEventById(id)
                     .orElseThrow(() -> new ResourceNotFoundException("Événement non trouvé"));
 
-            if (!event.getCreateur().getPhoneNumber().equals(phoneNumber)) {
+            if (!event.getCreateur().getId().equals(utilisateur.id())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(new ErrorResponse("Vous n'êtes pas autorisé à supprimer cet événement"));
             }
 
-            eventService.supprimerEvent(id, phoneNumber);
+            eventService.supprimerEvent(id, utilisateur.id());
             return ResponseEntity.ok().build();
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
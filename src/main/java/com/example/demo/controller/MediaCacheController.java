@@ -0,0 +1,33 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.MediaCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/media-cache")
+@RequiredArgsConstructor
+public class MediaCacheController {
+
+    private final MediaCache mediaCache;
+
+    /**
+     * Succès, échecs, évictions et occupation du cache des miniatures
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(mediaCache.getStats());
+    }
+
+    /**
+     * Vider le cache
+     */
+    @PostMapping("/clear")
+    public ResponseEntity<Void> clear() {
+        mediaCache.clear();
+        return ResponseEntity.ok().build();
+    }
+}
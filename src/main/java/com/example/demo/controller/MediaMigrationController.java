@@ -0,0 +1,48 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.MediaBlobMigrationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/admin/media-migration")
+@RequiredArgsConstructor
+public class MediaMigrationController {
+
+    private final MediaBlobMigrationService migrationService;
+
+    /**
+     * Progression et débit de la migration des BLOB
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        return ResponseEntity.ok(migrationService.getStatus());
+    }
+
+    /**
+     * Déclencher manuellement un lot de migration
+     */
+    @PostMapping("/run")
+    public ResponseEntity<Map<String, Object>> migrerLot() {
+        int migrated = migrationService.migrerLot();
+        return ResponseEntity.ok(Map.of("migratedRows", migrated));
+    }
+
+    /**
+     * Reprendre une colonne depuis le début
+     */
+    @PostMapping("/{source}/reset")
+    public ResponseEntity<?> reprendre(@PathVariable String source) {
+        try {
+            migrationService.reprendreDepuisLeDebut(source);
+            return ResponseEntity.ok().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", e.getMessage()));
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.demo.controller;
 
 import com.example.demo.model.Notification;
+import com.example.demo.model.Role;
+import com.example.demo.service.JwtTokenService;
+import com.example.demo.service.NotificationPushService;
 import com.example.demo.service.NotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -18,6 +23,43 @@ public class NotificationController {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private NotificationPushService notificationPushService;
+
+    @Autowired
+    private JwtTokenService jwtTokenService;
+
+    /**
+     * Flux temps réel (Server-Sent Events) des notifications et messages de contact de l'utilisateur.
+     * EventSource ne permet pas d'en-têtes : le jeton peut aussi être passé en paramètre "token".
+     * Les endpoints de lecture restent disponibles pour le rattrapage après une reconnexion
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> stream(
+            @RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestParam(value = "token", required = false) String token) {
+        String jwt = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7) : token;
+        if (jwt == null || !jwtTokenService.validateToken(jwt)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Long userId = jwtTokenService.extractUserId(jwt);
+        String role = jwtTokenService.extractRole(jwt);
+        if (userId == null || role == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Role audience;
+        try {
+            audience = Role.valueOf(role);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        SseEmitter emitter = notificationPushService.abonner(userId, audience);
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+
     @GetMapping
     public ResponseEntity<?> getNotificationsUtilisateur(@RequestParam Long userId) {
         try {
@@ -31,6 +73,23 @@ public class NotificationController {
         }
     }
 
+    /**
+     * Historique paginé : passer nextCursor en "avant" pour la page suivante
+     */
+    @GetMapping("/historique")
+    public ResponseEntity<?> getHistorique(@RequestParam Long userId,
+                                           @RequestParam(required = false) Long avant,
+                                           @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(notificationService.getHistorique(userId, avant, limit));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Erreur lors de la récupération de l'historique des notifications");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+    }
+
     @GetMapping("/non-lues")
     public ResponseEntity<?> getNotificationsNonLues(@RequestParam Long userId) {
         try {
@@ -79,8 +138,8 @@ public class NotificationController {
     @PutMapping("/lire-toutes")
     public ResponseEntity<?> marquerToutesCommeLues(@RequestParam Long userId) {
         try {
-            notificationService.marquerToutesCommeLues(userId);
-            return ResponseEntity.ok().build();
+            int count = notificationService.marquerToutesCommeLues(userId);
+            return ResponseEntity.ok(Map.of("count", count));
         } catch (RuntimeException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", "Erreur lors du marquage de toutes les notifications comme lues");
@@ -88,4 +147,32 @@ public class NotificationController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
         }
     }
+
+    @PutMapping("/lire-jusqua/{maxId}")
+    public ResponseEntity<?> marquerCommeLuesJusqua(@PathVariable Long maxId, @RequestParam Long userId) {
+        try {
+            int count = notificationService.marquerCommeLuesJusqua(userId, maxId);
+            return ResponseEntity.ok(Map.of("count", count));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Erreur lors du marquage des notifications comme lues");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+    }
+
+    @PutMapping("/lire")
+    public ResponseEntity<?> marquerCommeLuesParmi(@RequestParam Long userId, @RequestBody List<Long> ids) {
+        try {
+            int count = notificationService.marquerCommeLuesParmi(userId, ids);
+            return ResponseEntity.ok(Map.of("count", count));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Erreur lors du marquage des notifications comme lues");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+    }
 }
\ No newline at end of file
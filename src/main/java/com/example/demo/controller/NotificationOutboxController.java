@@ -0,0 +1,52 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.NotificationOutbox;
+import com.example.demo.service.NotificationOutboxService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/admin/notification-outbox")
+@RequiredArgsConstructor
+public class NotificationOutboxController {
+
+    private final NotificationOutboxService outboxService;
+
+    /**
+     * Nombre de notifications par statut (en attente, en cours, diffusées, lettres mortes)
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        return ResponseEntity.ok(outboxService.getStatus());
+    }
+
+    /**
+     * Dernières lettres mortes avec leur erreur
+     */
+    @GetMapping("/dead")
+    public ResponseEntity<List<NotificationOutbox>> getLettresMortes(
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        return ResponseEntity.ok(outboxService.getLettresMortes(limit));
+    }
+
+    /**
+     * Rejouer une lettre morte
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<?> rejouer(@PathVariable Long id) {
+        try {
+            outboxService.rejouer(id);
+            return ResponseEntity.ok().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+}
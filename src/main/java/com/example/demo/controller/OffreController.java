@@ -1,8 +1,8 @@
 package com.example.demo.controller;
 
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Offre;
 import com.example.demo.service.OffreService;
-import com.example.demo.service.JwtTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +10,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.List;
 
@@ -22,18 +21,14 @@ public class OffreController {
     @Autowired
     private OffreService offreService;
 
-    @Autowired
-    private JwtTokenService jwtTokenService;
-
     @PostMapping("/creer")
     public ResponseEntity<?> creerOffre(
             @RequestBody OffreService.OffreDto offreDto,
-            HttpServletRequest request
+            AuthenticatedUser utilisateur
     ) {
         try {
-            String phoneNumber = extractPhoneNumberFromToken(request);
             validateOffreDto(offreDto);
-            Offre offre = offreService.creerOffre(phoneNumber, offreDto);
+            Offre offre = offreService.creerOffre(utilisateur, offreDto);
             return ResponseEntity.ok(offre);
         } catch (IllegalArgumentException e) {
             logger.warn("Erreur de validation: {}", e.getMessage());
@@ -46,17 +41,6 @@ public class OffreController {
         }
     }
 
-    // Méthode d'extraction du numéro de téléphone depuis le token
-    private String extractPhoneNumberFromToken(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new IllegalArgumentException("Token d'authentification manquant ou invalide");
-        }
-
-        String token = authHeader.substring(7);
-        return jwtTokenService.extractPhoneNumber(token);
-    }
-
     // Validation des données de l'offre
     private void validateOffreDto(OffreService.OffreDto offreDto) {
         if (offreDto.getTitre() == null || offreDto.getTitre().trim().isEmpty()) {
@@ -104,10 +88,9 @@ public class OffreController {
 
     // Changer la route pour éviter le conflit
     @GetMapping("/mes-offres")
-    public ResponseEntity<?> getOffresUtilisateur(HttpServletRequest request) {
+    public ResponseEntity<?> getOffresUtilisateur(AuthenticatedUser utilisateur) {
         try {
-            String phoneNumber = extractPhoneNumberFromToken(request);
-            List<Offre> offres = offreService.getOffresUtilisateur(phoneNumber);
+            List<Offre> offres = offreService.getOffresUtilisateur(utilisateur.id());
             return ResponseEntity.ok(offres);
         } catch (Exception e) {
             logger.error("Erreur récupération offres utilisateur", e);
@@ -117,14 +100,13 @@ public class OffreController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> supprimerOffre(@PathVariable Long id, HttpServletRequest request) {
+    public ResponseEntity<?> supprimerOffre(@PathVariable Long id, AuthenticatedUser utilisateur) {
         try {
-            String phoneNumber = extractPhoneNumberFromToken(request);
             Offre offre = offreService.getOffreById(id)
                     .orElseThrow(() -> new ResourceNotFoundException("Offre non trouvée"));
 
             // Vérifier que l'utilisateur est le propriétaire
-            if (!offre.getCreateur().getPhoneNumber().equals(phoneNumber)) {
+            if (offre.getCreateur() == null || !offre.getCreateur().getId().equals(utilisateur.id())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(new ErrorResponse("Vous n'êtes pas autorisé à supprimer cette offre"));
             }
@@ -1,8 +1,11 @@
 package com.example.demo.controller;
 
 import com.example.demo.model.Photo;
+import com.example.demo.service.ImageDerivativeService;
+import com.example.demo.service.MediaCache;
 import com.example.demo.service.PhotoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -24,6 +27,12 @@ public class PhotoController {
     @Autowired
     private PhotoService photoService;
 
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private MediaCache mediaCache;
+
     @PostMapping("/upload")
     public ResponseEntity<?> uploadPhoto(
             @RequestParam("file") MultipartFile file,
@@ -143,33 +152,40 @@ public class PhotoController {
         }
     }
     @GetMapping(value = "/{photoId}", produces = MediaType.ALL_VALUE)
-    public ResponseEntity<?> getPhoto(@PathVariable Long photoId) {
+    public ResponseEntity<?> getPhoto(
+            @PathVariable Long photoId,
+            @RequestParam(value = "size", required = false) String size) {
         try {
             Photo photo = photoService.getPhotoById(photoId);
             if (photo == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            Path imagePath = Paths.get(photo.getThumbnailPath());
-            if (!Files.exists(imagePath)) {
+            Path originalPath = Paths.get(photo.getThumbnailPath());
+            if (!Files.exists(originalPath)) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("Image non trouvée sur le serveur");
             }
 
+            // Version réduite si demandée (small, medium, large), sinon l'original
+            Path imagePath = imageDerivativeService.resolve(originalPath, size);
+
             // Déterminer le type de contenu basé sur l'extension du fichier
             String contentType = Files.probeContentType(imagePath);
             if (contentType == null) {
                 contentType = "application/octet-stream";
             }
 
-            // Lire le contenu du fichier
-            byte[] imageData = Files.readAllBytes(imagePath);
+            // Contenu servi depuis le cache hors tas sans copie, ou en flux depuis le disque
+            Resource imageData = mediaCache.open(imagePath);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + photo.getFileName() + "\"")
                     .body(imageData);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -1,29 +1,40 @@
 package com.example.demo.controller;
 
 import com.example.demo.model.Reel;
+import com.example.demo.service.MediaStreamingService;
 import com.example.demo.service.ReelService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/reels")
 public class ReelController {
+    // Les vidéos sont stockées sous un nom unique et ne sont jamais réécrites
+    private static final CacheControl IMMUTABLE_VIDEO_CACHE =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
     @Autowired
     private ReelService reelService;
 
+    @Autowired
+    private MediaStreamingService mediaStreamingService;
+
     @PostMapping
     public ResponseEntity<Reel> createReel(
             @RequestParam("userId") Long userId,
@@ -52,38 +63,67 @@ public class ReelController {
     }
 
     /**
-     * Permet de streamer une vidéo à partir de son ID
-     * @param reelId ID du reel contenant la vidéo
-     * @return Le fichier vidéo pour streaming
+     * Fil des reels paginé par curseur, du plus récent au plus ancien.
+     * L'en-tête Link indique la page suivante (rel="next") et les premières vidéos
+     * de cette page (rel="prefetch") pour que le client les précharge pendant la lecture
+     * @param cursor curseur renvoyé par la page précédente (absent pour la première page)
+     * @param limit taille de page (bornée par reels.feed.max-page-size)
      */
-    @GetMapping("/video/{reelId}")
-    public ResponseEntity<Resource> getVideo(@PathVariable Long reelId) {
+    @GetMapping("/feed")
+    public ResponseEntity<?> getFeed(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        ReelService.ReelFeedPageDto page;
         try {
-            Reel reel = reelService.getAllReels().stream()
-                    .filter(r -> r.getId().equals(reelId))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Reel not found"));
-
-            Path filePath = Paths.get(reel.getVideoPath());
-            Resource resource = new UrlResource(filePath.toUri());
+            page = reelService.getFeed(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
-            if (resource.exists() && resource.isReadable()) {
-                HttpHeaders headers = new HttpHeaders();
-                headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + reel.getOriginalFilename() + "\"");
+        List<String> links = new ArrayList<>();
+        if (page.getNextCursor() != null) {
+            links.add("</api/reels/feed?cursor=" + page.getNextCursor() + "&limit=" + page.getPageSize() + ">; rel=\"next\"");
+        }
+        for (String videoUrl : page.getPrefetch()) {
+            links.add("<" + videoUrl + ">; rel=\"prefetch\"");
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!links.isEmpty()) {
+            response.header(HttpHeaders.LINK, String.join(", ", links));
+        }
+        return response.body(page);
+    }
 
-                // Determine content type
-                String contentType = determineContentType(reel.getOriginalFilename());
+    /**
+     * Permet de streamer une vidéo à partir de son ID
+     * Les fichiers sont nommés par UUID et ne changent jamais : la réponse est mise en cache
+     * de façon permanente côté client, et supporte les requêtes partielles (206) et conditionnelles (304)
+     * @param reelId ID du reel contenant la vidéo
+     */
+    @GetMapping("/video/{reelId}")
+    public void getVideo(@PathVariable Long reelId,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Reel reel = reelService.getReelById(reelId).orElse(null);
+        if (reel == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Reel not found");
+            return;
+        }
 
-                return ResponseEntity.ok()
-                        .headers(headers)
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .body(resource);
-            } else {
-                throw new RuntimeException("Could not read the file");
-            }
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Error: " + e.getMessage());
+        Path filePath = Paths.get(reel.getVideoPath());
+        if (!Files.isReadable(filePath)) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Could not read the file");
+            return;
         }
+
+        mediaStreamingService.stream(
+                filePath,
+                determineContentType(reel.getOriginalFilename()),
+                reel.getOriginalFilename() != null ? reel.getOriginalFilename() : filePath.getFileName().toString(),
+                IMMUTABLE_VIDEO_CACHE,
+                request,
+                response
+        );
     }
 
     /**
@@ -0,0 +1,26 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.SmsDispatchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/sms")
+@RequiredArgsConstructor
+public class SmsDispatchController {
+
+    private final SmsDispatchService smsDispatchService;
+
+    /**
+     * État de la file d'envoi des SMS (en attente, envoyés, fusionnés, abandonnés, disjoncteur)
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        return ResponseEntity.ok(smsDispatchService.getStatus());
+    }
+}
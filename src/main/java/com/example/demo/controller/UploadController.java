@@ -0,0 +1,175 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.UploadSession;
+import com.example.demo.model.UploadTarget;
+import com.example.demo.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Upload reprenable des vidéos d'exercice et des reels :
+ * POST /api/uploads ouvre une session, PUT /api/uploads/{id} envoie un morceau brut
+ * (en-têtes Upload-Offset et X-Chunk-Sha256), GET /api/uploads/{id} donne la position
+ * pour reprendre, et POST /api/uploads/{id}/commit rattache le fichier complet.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin(origins = "*", exposedHeaders = {"Upload-Offset", "Location"})
+@RequiredArgsConstructor
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+
+    private final UploadSessionService uploadSessionService;
+
+    /**
+     * Ouvrir une session d'upload
+     */
+    @PostMapping
+    public ResponseEntity<?> ouvrirSession(
+            @RequestParam("userId") Long userId,
+            @RequestParam("target") UploadTarget target,
+            @RequestParam("fileName") String fileName,
+            @RequestParam("totalSize") long totalSize) {
+        try {
+            UploadSession session = uploadSessionService.ouvrirSession(userId, target, fileName, totalSize);
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.getId()))
+                    .header(UPLOAD_OFFSET_HEADER, "0")
+                    .body(toResponse(session));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Erreur lors de la création de la session : " + e.getMessage());
+        }
+    }
+
+    /**
+     * État d'une session : le client reprend l'envoi à partir de Upload-Offset
+     */
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getSession(@PathVariable String uploadId) {
+        try {
+            UploadSession session = uploadSessionService.getSession(uploadId);
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getReceivedBytes()))
+                    .body(toResponse(session));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Envoyer un morceau. Le corps est lu directement depuis la requête, sans multipart
+     */
+    @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> envoyerMorceau(
+            @PathVariable String uploadId,
+            @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+            @RequestHeader("X-Chunk-Sha256") String chunkSha256,
+            HttpServletRequest request) {
+        try (InputStream body = request.getInputStream()) {
+            UploadSession session = uploadSessionService.ecrireMorceau(uploadId, offset, chunkSha256, body);
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getReceivedBytes()))
+                    .body(toResponse(session));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            // Position inattendue ou session occupée : le client relit la position et reprend
+            return conflict(uploadId, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Erreur lors de l'écriture du morceau : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Valider l'upload : crée le reel ou rattache la vidéo à l'exercice
+     */
+    @PostMapping("/{uploadId}/commit")
+    public ResponseEntity<?> valider(
+            @PathVariable String uploadId,
+            @RequestParam(value = "sha256", required = false) String sha256,
+            @RequestParam(value = "exerciseId", required = false) Long exerciseId,
+            @RequestParam(value = "title", required = false) String title,
+            @RequestParam(value = "description", required = false) String description) {
+        try {
+            UploadSession session = uploadSessionService.getSession(uploadId);
+            if (session.getTarget() == UploadTarget.REEL) {
+                if (title == null || title.isEmpty()) {
+                    return ResponseEntity.badRequest().body("Le titre du reel est obligatoire");
+                }
+                return ResponseEntity.status(HttpStatus.CREATED)
+                        .body(uploadSessionService.validerReel(uploadId, title, description, sha256));
+            }
+            if (exerciseId == null) {
+                return ResponseEntity.badRequest().body("L'ID de l'exercice est obligatoire");
+            }
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(uploadSessionService.validerVideoExercice(uploadId, exerciseId, sha256));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return conflict(uploadId, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Erreur lors de la validation de l'upload : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Abandonner un upload
+     */
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> annuler(@PathVariable String uploadId) {
+        try {
+            uploadSessionService.annulerSession(uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Erreur lors de l'annulation : " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> conflict(String uploadId, String message) {
+        UploadSession session = uploadSessionService.getSession(uploadId);
+        Map<String, Object> body = toResponse(session);
+        body.put("message", message);
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getReceivedBytes()))
+                .body(body);
+    }
+
+    private Map<String, Object> toResponse(UploadSession session) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("target", session.getTarget());
+        response.put("status", session.getStatus());
+        response.put("offset", session.getReceivedBytes());
+        response.put("totalSize", session.getTotalSize());
+        response.put("maxChunkBytes", uploadSessionService.getMaxChunkBytes());
+        return response;
+    }
+}
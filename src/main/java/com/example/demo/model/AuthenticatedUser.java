@@ -0,0 +1,17 @@
+package com.example.demo.model;
+
+/**
+ * Utilisateur authentifié de la requête : résumé immuable, sans relation ni photo.
+ * Injecté directement dans les méthodes de contrôleur (voir AuthenticatedUserArgumentResolver)
+ */
+public record AuthenticatedUser(Long id, Role role, boolean verified, String phoneNumber) {
+
+    public boolean hasRole(Role... roles) {
+        for (Role candidate : roles) {
+            if (candidate == role) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
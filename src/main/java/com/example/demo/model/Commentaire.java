@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -52,6 +53,15 @@ public class Commentaire {
     @Column(name = "image_apres", columnDefinition = "LONGBLOB")
     private byte[] imageApres;
 
+    // Noms des fichiers dans le stockage média (remplacent progressivement les BLOB)
+    @JsonIgnore
+    @Column(name = "image_avant_path")
+    private String imageAvantPath;
+
+    @JsonIgnore
+    @Column(name = "image_apres_path")
+    private String imageApresPath;
+
     // Constructeur par défaut
     public Commentaire() {
         this.dateCommentaire = LocalDateTime.now();  // Initialisation avec la date et l'heure actuelles
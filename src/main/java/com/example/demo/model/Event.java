@@ -58,6 +58,11 @@ public class Event {
     @Column(name = "photo", columnDefinition = "LONGBLOB")
     private byte[] photo;
 
+    // Nom du fichier de la photo dans le stockage média (remplace progressivement le BLOB)
+    @JsonIgnore
+    @Column(name = "photo_path")
+    private String photoPath;
+
     @JsonIgnore  // Relation avec l'utilisateur qui crée l'événement (coach ou gym)
     @ManyToOne
     @JoinColumn(name = "createur_id", nullable = false)
@@ -69,5 +74,13 @@ public class Event {
                 (createur.getRole() == Role.COACH || createur.getRole() == Role.GYM);
     }
 
+    // URL de la photo, servie depuis le stockage média
+    public String getPhotoUrl() {
+        if (id == null || (photoPath == null && photo == null)) {
+            return null;
+        }
+        return "/api/events/" + id + "/photo";
+    }
+
     // Constructeurs, getters et setters sont générés par Lombok
 }
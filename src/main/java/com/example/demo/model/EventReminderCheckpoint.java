@@ -0,0 +1,63 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Avancement de l'envoi des rappels pour les événements d'une date donnée, par partition.
+ * Mis à jour dans la même transaction que chaque lot de rappels : après un arrêt,
+ * l'envoi reprend après la dernière inscription traitée sans renvoyer de rappel
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "event_reminder_checkpoint")
+public class EventReminderCheckpoint {
+    // Ex: "2026-10-18#0/4" (date, partition, nombre de partitions)
+    @Id
+    @Column(name = "checkpoint_key", length = 64)
+    private String checkpointKey;
+
+    @Column(name = "event_date", nullable = false)
+    private LocalDate eventDate;
+
+    @Column(name = "partition_index", nullable = false)
+    private int partitionIndex;
+
+    @Column(name = "partitions", nullable = false)
+    private int partitions = 1;
+
+    // Dernier ID d'EventParticipation traité (pagination par clé)
+    @Column(name = "last_participation_id", nullable = false)
+    private Long lastParticipationId = 0L;
+
+    @Column(name = "sent_count", nullable = false)
+    private Long sentCount = 0L;
+
+    @Column(nullable = false)
+    private boolean completed = false;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public EventReminderCheckpoint(LocalDate eventDate, int partitionIndex, int partitions) {
+        this.checkpointKey = cle(eventDate, partitionIndex, partitions);
+        this.eventDate = eventDate;
+        this.partitionIndex = partitionIndex;
+        this.partitions = partitions;
+    }
+
+    public static String cle(LocalDate eventDate, int partitionIndex, int partitions) {
+        return eventDate + "#" + partitionIndex + "/" + partitions;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -1,19 +1,28 @@
 package com.example.demo.model;
 
-import com.example.demo.service.NotificationService;
+import com.example.demo.service.EventReminderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+
 @Component
 public class EventReminderScheduler {
 
     @Autowired
-    private NotificationService notificationService;
+    private EventReminderService eventReminderService;
 
     // Se lance tous les jours à 9h00
     @Scheduled(cron = "0 0 9 * * ?")
     public void envoyerRappelsEvenements() {
-        notificationService.notifierRappelEvenement();
+        eventReminderService.envoyerRappels(LocalDate.now().plusDays(1));
+    }
+
+    // Reprise d'un envoi interrompu par un arrêt de l'application
+    @Scheduled(fixedDelayString = "${reminders.resume-interval-ms:900000}",
+            initialDelayString = "${reminders.resume-initial-delay-ms:120000}")
+    public void reprendreRappelsInterrompus() {
+        eventReminderService.reprendreSiInterrompu(LocalDate.now().plusDays(1));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bail d'un job planifié partagé entre les instances : une ligne par job (ou par partition).
+ * Le jeton de fencing augmente à chaque acquisition ; un détenteur dont le bail a expiré
+ * et a été repris ne peut plus écrire avec son ancien jeton
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "job_lease")
+public class JobLease {
+    @Id
+    @Column(name = "job_name", length = 128)
+    private String jobName;
+
+    // Instance détentrice, null quand le bail est libre
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    @Column(name = "fencing_token", nullable = false)
+    private Long fencingToken = 0L;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "acquired_at")
+    private LocalDateTime acquiredAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,40 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fichier média stocké une seule fois sur disque (nommé par son SHA-256)
+ * et partagé par les vidéos d'exercice, les reels et les photos qui le référencent
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "media_blob")
+public class MediaBlob {
+    // Chemin absolu du fichier, ex: /uploads/videos/ab/cd/abcd...ef.mp4
+    @Id
+    @Column(name = "storage_path", length = 512)
+    private String storagePath;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    // Nombre d'entités qui pointent vers ce fichier ; à 0 il est supprimé par la purge
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,52 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Point de reprise de la migration des colonnes BLOB vers le stockage média
+ * Une ligne par colonne migrée (ex: "user.photo")
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "media_migration_checkpoint")
+public class MediaMigrationCheckpoint {
+    @Id
+    @Column(name = "source", length = 64)
+    private String source;
+
+    // Dernier ID traité (pagination par clé)
+    @Column(name = "last_id", nullable = false)
+    private Long lastId = 0L;
+
+    @Column(name = "migrated_rows", nullable = false)
+    private Long migratedRows = 0L;
+
+    @Column(name = "migrated_bytes", nullable = false)
+    private Long migratedBytes = 0L;
+
+    @Column(name = "failed_rows", nullable = false)
+    private Long failedRows = 0L;
+
+    @Column(nullable = false)
+    private boolean completed = false;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public MediaMigrationCheckpoint(String source) {
+        this.source = source;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
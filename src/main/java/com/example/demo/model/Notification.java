@@ -1,11 +1,18 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+// Les annonces (destinataire null) sont lues par rôle dans l'ordre des IDs, l'historique par utilisateur aussi
+@Table(name = "notifications", indexes = {
+        @Index(name = "idx_notifications_audience_id", columnList = "audience, id"),
+        @Index(name = "idx_notifications_user_id_id", columnList = "user_id, id"),
+        // Sélection des notifications expirées par le compacteur de rétention
+        @Index(name = "idx_notifications_type_date", columnList = "type, date_creation")
+})
 public class Notification {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,9 +25,14 @@ public class Notification {
     private String message;
 
     @ManyToOne
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id")
     @JsonIgnoreProperties({"notifications", "password", "events", "offres"})
-    private User destinataire;
+    private User destinataire; // null pour une annonce adressée à tout un rôle
+
+    // Rôle visé par une annonce : stockée une seule fois, l'état de lecture est dans NotificationReadMarker
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Role audience;
 
     @Column(nullable = false)
     private LocalDateTime dateCreation;
@@ -58,6 +70,19 @@ public class Notification {
         this.dateCreation = LocalDateTime.now();
     }
 
+    // Constructeur d'annonce : une seule ligne pour tous les utilisateurs du rôle
+    public Notification(String titre, String message, Role audience, NotificationType type, Long referenceId) {
+        this.titre = titre;
+        this.message = message;
+        this.audience = audience;
+        this.type = type;
+        this.referenceId = referenceId;
+        this.dateCreation = LocalDateTime.now();
+    }
+
+    @JsonIgnore
+    public boolean isAnnonce() { return destinataire == null && audience != null; }
+
     // Getters et Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -71,6 +96,9 @@ public class Notification {
     public User getDestinataire() { return destinataire; }
     public void setDestinataire(User destinataire) { this.destinataire = destinataire; }
 
+    public Role getAudience() { return audience; }
+    public void setAudience(Role audience) { this.audience = audience; }
+
     public LocalDateTime getDateCreation() { return dateCreation; }
     public void setDateCreation(LocalDateTime dateCreation) { this.dateCreation = dateCreation; }
 
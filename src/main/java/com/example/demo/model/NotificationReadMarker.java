@@ -0,0 +1,48 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * État de lecture des annonces pour un utilisateur, en une seule ligne :
+ * toutes les annonces d'ID inférieur ou égal à lastReadId sont lues, et readBitmap
+ * marque celles lues au-delà (bit i = i-ème annonce du rôle après lastReadId).
+ * Le marqueur est créé à l'inscription sur la dernière annonce publiée
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "notification_read_marker")
+public class NotificationReadMarker {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "last_read_id", nullable = false)
+    private Long lastReadId = 0L;
+
+    @Column(name = "read_bitmap", columnDefinition = "BLOB")
+    private byte[] readBitmap;
+
+    // Bitmap indexé par rang d'annonce ; null pour les anciennes lignes indexées par écart d'ID,
+    // converties à la lecture
+    @Column(name = "bitmap_par_rang")
+    private Boolean bitmapParRang;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public NotificationReadMarker(Long userId) {
+        this.userId = userId;
+        this.bitmapParRang = true;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
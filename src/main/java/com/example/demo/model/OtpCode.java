@@ -0,0 +1,36 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Code à usage unique en attente de vérification (otp.store=database, par défaut), partagé entre les instances.
+ * Seule l'empreinte du code est stockée
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "otp_code", indexes = {
+        @Index(name = "idx_otp_code_expires_at", columnList = "expires_at")
+})
+public class OtpCode {
+    @Id
+    @Column(name = "otp_key", length = 128)
+    private String otpKey;
+
+    @Column(name = "code_hash", length = 64, nullable = false)
+    private String codeHash;
+
+    // Donnée associée au code (nouveau numéro pour un changement de numéro)
+    @Column(name = "payload", length = 255)
+    private String payload;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
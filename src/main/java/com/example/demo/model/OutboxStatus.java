@@ -0,0 +1,8 @@
+package com.example.demo.model;
+
+public enum OutboxStatus {
+    PENDING,
+    PROCESSING,
+    DONE,
+    DEAD
+}
@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Entity
 @Getter
 @Setter
-@Table(name = "reel")
+// Index du fil des reels : tri et pagination par (created_at, id)
+@Table(name = "reel", indexes = @Index(name = "idx_reel_created_at_id", columnList = "created_at, id"))
 public class Reel {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
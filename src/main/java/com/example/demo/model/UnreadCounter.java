@@ -0,0 +1,29 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compteur tenu à jour à chaque écriture, pour servir les badges "non lus" sans compter les lignes.
+ * La clé indique la nature du compteur, ex: "notification:42", "annonces:GYMZER", "contact:7"
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "unread_counter")
+public class UnreadCounter {
+    @Id
+    @Column(name = "counter_key", length = 64)
+    private String counterKey;
+
+    @Column(name = "counter_value", nullable = false)
+    private Long counterValue = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,64 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Session d'upload par morceaux : les morceaux sont écrits à leur position dans un fichier
+ * partiel, et le fichier complet est rattaché à une vidéo d'exercice ou un reel au commit
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "upload_session")
+public class UploadSession {
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private UploadTarget target;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private UploadStatus status = UploadStatus.IN_PROGRESS;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    // Nombre d'octets reçus et vérifiés : position attendue du prochain morceau
+    @Column(name = "received_bytes", nullable = false)
+    private Long receivedBytes = 0L;
+
+    @Column(name = "part_path", length = 512)
+    private String partPath;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
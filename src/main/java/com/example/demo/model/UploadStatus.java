@@ -0,0 +1,8 @@
+package com.example.demo.model;
+
+public enum UploadStatus {
+    IN_PROGRESS,
+    COMMITTED,
+    ABORTED,
+    EXPIRED
+}
@@ -0,0 +1,9 @@
+package com.example.demo.model;
+
+/**
+ * Destination d'un upload par morceaux
+ */
+public enum UploadTarget {
+    EXERCISE_VIDEO,
+    REEL
+}
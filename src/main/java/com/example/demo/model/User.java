@@ -1,19 +1,23 @@
 package com.example.demo.model;
 
 import com.example.demo.model.Role;
+import com.example.demo.util.PhoneNumberNormalizer;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -57,9 +61,15 @@ public class User {
     @Column(unique = true, nullable = false )
     private String phoneNumber;
 
+    // Forme canonique (E.164) de phoneNumber, seule clé utilisée pour retrouver un utilisateur
+    @JsonIgnore
+    @Column(name = "phone_e164", unique = true, length = 20)
+    private String phoneE164;
+
     @Column(nullable = false)
     private boolean verified = false;
 
+    // Plus écrit : les codes de vérification sont gardés par OtpService
     private String verificationCode;
 
     @Column(length = 100)
@@ -94,6 +104,11 @@ public class User {
     @Lob
     @Column(name = "photo", columnDefinition = "LONGBLOB")
     private byte[] photo;
+
+    // Nom du fichier de la photo dans le stockage média (remplace progressivement le BLOB)
+    @JsonIgnore
+    @Column(name = "photo_path")
+    private String photoPath;
     @Column(name = "lastname")
     private String nom;
     private String bio;
@@ -123,6 +138,7 @@ public class User {
 
 
     /// //// update profil user
+    // Plus écrit : le numéro en attente est associé au code de OtpService
     @Column(name = "temp_phone_number")
     private String tempPhoneNumber;
 
@@ -134,5 +150,32 @@ public class User {
     public void setTempPhoneNumber(String tempPhoneNumber) {
         this.tempPhoneNumber = tempPhoneNumber;
     }
+
+    // Numéro tel que chargé de la base : phone_e164 n'est recalculé que si le numéro change
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String phoneNumberCharge;
+
+    @PostLoad
+    protected void memoriserTelephone() {
+        phoneNumberCharge = phoneNumber;
+    }
+
+    @PrePersist
+    protected void normaliserTelephone() {
+        phoneE164 = PhoneNumberNormalizer.normaliserOuNull(phoneNumber);
+        phoneNumberCharge = phoneNumber;
+    }
+
+    // Un numéro laissé vide par le remplissage (invalide ou déjà pris par un autre compte)
+    // reste vide tant qu'il ne change pas : sinon la mise à jour violerait l'index unique
+    @PreUpdate
+    protected void normaliserTelephoneModifie() {
+        if (!Objects.equals(phoneNumber, phoneNumberCharge)) {
+            normaliserTelephone();
+        }
+    }
 }
 
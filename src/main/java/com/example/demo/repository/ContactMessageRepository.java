@@ -5,10 +5,12 @@ import com.example.demo.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -36,4 +38,15 @@ public interface ContactMessageRepository extends JpaRepository<ContactMessage,
             @Param("coach") User coach,
             @Param("gymzer") User gymzer
     );
-}
\ No newline at end of file
+
+    // Marquages en une seule requête UPDATE : retournent le nombre de messages passés à lu
+    @Modifying
+    @Query("UPDATE ContactMessage cm SET cm.lu = true " +
+            "WHERE cm.coach.id = :coachId AND cm.lu = false AND cm.id <= :maxId")
+    int marquerLusJusqua(@Param("coachId") Long coachId, @Param("maxId") Long maxId);
+
+    @Modifying
+    @Query("UPDATE ContactMessage cm SET cm.lu = true " +
+            "WHERE cm.coach.id = :coachId AND cm.lu = false AND cm.id IN :ids")
+    int marquerLusParmi(@Param("coachId") Long coachId, @Param("ids") Collection<Long> ids);
+}
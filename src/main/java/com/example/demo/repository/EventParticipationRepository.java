@@ -2,8 +2,11 @@ package com.example.demo.repository;
 
 import com.example.demo.model.EventParticipation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +20,26 @@ public interface EventParticipationRepository extends JpaRepository<EventPartici
 
     Optional<EventParticipation> findByEventIdAndEmail(Long eventId, String email);
     List<EventParticipation> findByUserId(Long userId);
+
+    /**
+     * Inscrits (avec compte) aux événements d'une date, par ordre d'ID à partir de afterId.
+     * Les IDs sont découpés en blocs de blockSize attribués à tour de rôle aux partitions :
+     * le découpage ne dépend pas des inscriptions ajoutées pendant l'envoi
+     */
+    @Query(value = "SELECT p.id AS id, p.user_id AS userId, p.event_id AS eventId FROM event_participation p " +
+            "JOIN event e ON e.id = p.event_id " +
+            "WHERE e.date = :date AND p.user_id IS NOT NULL AND p.id > :afterId " +
+            "AND MOD(p.id DIV :blockSize, :partitions) = :partition ORDER BY p.id LIMIT :limit",
+            nativeQuery = true)
+    List<ReminderTarget> findReminderTargets(@Param("date") LocalDate date, @Param("afterId") Long afterId,
+                                             @Param("blockSize") long blockSize,
+                                             @Param("partitions") int partitions,
+                                             @Param("partition") int partition,
+                                             @Param("limit") int limit);
+
+    interface ReminderTarget {
+        Long getId();
+        Long getUserId();
+        Long getEventId();
+    }
 }
\ No newline at end of file
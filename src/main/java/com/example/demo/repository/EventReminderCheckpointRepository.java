@@ -0,0 +1,13 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.EventReminderCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface EventReminderCheckpointRepository extends JpaRepository<EventReminderCheckpoint, String> {
+
+    boolean existsByEventDateAndCompletedFalse(LocalDate eventDate);
+}
@@ -12,6 +12,7 @@ import java.util.List;
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
     List<Event> findByCreateur(User createur);
+    List<Event> findByCreateurId(Long createurId);
     List<Event> findByDate(LocalDate date);
 
 }
\ No newline at end of file
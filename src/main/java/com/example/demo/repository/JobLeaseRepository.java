@@ -0,0 +1,56 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Toutes les comparaisons d'expiration utilisent l'horloge de la base, commune aux instances
+ */
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO job_lease (job_name, owner, fencing_token, expires_at, updated_at) " +
+            "VALUES (:jobName, NULL, 0, NOW(3), NOW(3))",
+            nativeQuery = true)
+    int creerSiAbsent(@Param("jobName") String jobName);
+
+    // Prise du bail s'il est libre ou expiré : le jeton de fencing est incrémenté
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE job_lease SET owner = :owner, fencing_token = fencing_token + 1, " +
+            "acquired_at = NOW(3), expires_at = TIMESTAMPADD(MICROSECOND, :ttlMillis * 1000, NOW(3)), " +
+            "updated_at = NOW(3) " +
+            "WHERE job_name = :jobName AND (owner IS NULL OR expires_at < NOW(3))",
+            nativeQuery = true)
+    int acquerir(@Param("jobName") String jobName, @Param("owner") String owner,
+                 @Param("ttlMillis") long ttlMillis);
+
+    @Query("SELECT l.fencingToken FROM JobLease l WHERE l.jobName = :jobName AND l.owner = :owner")
+    Optional<Long> findFencingToken(@Param("jobName") String jobName, @Param("owner") String owner);
+
+    // Prolongation possible seulement avec le jeton courant et avant l'expiration
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE job_lease SET expires_at = TIMESTAMPADD(MICROSECOND, :ttlMillis * 1000, NOW(3)), " +
+            "updated_at = NOW(3) " +
+            "WHERE job_name = :jobName AND owner = :owner AND fencing_token = :token AND expires_at >= NOW(3)",
+            nativeQuery = true)
+    int renouveler(@Param("jobName") String jobName, @Param("owner") String owner,
+                   @Param("token") long token, @Param("ttlMillis") long ttlMillis);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE job_lease SET owner = NULL, expires_at = NOW(3), updated_at = NOW(3) " +
+            "WHERE job_name = :jobName AND owner = :owner AND fencing_token = :token",
+            nativeQuery = true)
+    int liberer(@Param("jobName") String jobName, @Param("owner") String owner, @Param("token") long token);
+}
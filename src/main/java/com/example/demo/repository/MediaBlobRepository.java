@@ -0,0 +1,42 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, String> {
+
+    // Créer la référence ou incrémenter le compteur en une seule requête atomique
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO media_blob (storage_path, sha256, size_bytes, ref_count, created_at, updated_at) " +
+            "VALUES (:storagePath, :sha256, :sizeBytes, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = NOW()",
+            nativeQuery = true)
+    int acquire(@Param("storagePath") String storagePath,
+                @Param("sha256") String sha256,
+                @Param("sizeBytes") long sizeBytes);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount - 1, b.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE b.storagePath = :storagePath AND b.refCount > 0")
+    int release(@Param("storagePath") String storagePath);
+
+    // Fichiers sans référence depuis plus de graceMinutes (comparaison faite avec l'horloge de la base)
+    @Query(value = "SELECT storage_path FROM media_blob WHERE ref_count = 0 " +
+            "AND updated_at < NOW() - INTERVAL :graceMinutes MINUTE ORDER BY updated_at LIMIT :limit",
+            nativeQuery = true)
+    List<String> findUnreferenced(@Param("graceMinutes") long graceMinutes, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM MediaBlob b WHERE b.storagePath = :storagePath AND b.refCount = 0")
+    int deleteIfUnreferenced(@Param("storagePath") String storagePath);
+}
@@ -0,0 +1,41 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.NotificationOutbox;
+import com.example.demo.model.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    @Query("SELECT o.id FROM NotificationOutbox o WHERE o.status = com.example.demo.model.OutboxStatus.PENDING " +
+            "AND o.nextAttemptAt <= :now ORDER BY o.id")
+    List<Long> findIdsPrets(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Réservation atomique : une seule instance traite chaque ligne
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificationOutbox o SET o.status = com.example.demo.model.OutboxStatus.PROCESSING, " +
+            "o.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE o.id = :id AND o.status = com.example.demo.model.OutboxStatus.PENDING")
+    int reserver(@Param("id") Long id);
+
+    // Lignes restées en cours après un arrêt brutal : elles redeviennent disponibles
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificationOutbox o SET o.status = com.example.demo.model.OutboxStatus.PENDING " +
+            "WHERE o.status = com.example.demo.model.OutboxStatus.PROCESSING AND o.updatedAt < :limite")
+    int libererBloquees(@Param("limite") LocalDateTime limite);
+
+    List<NotificationOutbox> findByStatusOrderByIdDesc(OutboxStatus status, Pageable pageable);
+
+    long countByStatus(OutboxStatus status);
+}
@@ -0,0 +1,20 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.NotificationReadMarker;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface NotificationReadMarkerRepository extends JpaRepository<NotificationReadMarker, Long> {
+
+    // Verrou sur la ligne de l'utilisateur : deux marquages simultanés ne s'écrasent pas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM NotificationReadMarker m WHERE m.userId = :userId")
+    Optional<NotificationReadMarker> findForUpdate(@Param("userId") Long userId);
+}
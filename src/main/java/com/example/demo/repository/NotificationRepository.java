@@ -1,15 +1,76 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Notification;
+import com.example.demo.model.Role;
 import com.example.demo.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
-    List<Notification> findByDestinataireOrderByDateCreationDesc(User destinataire);
     List<Notification> findByDestinataireAndLueOrderByDateCreationDesc(User destinataire, boolean lue);
     long countByDestinataireAndLue(User destinataire, boolean lue);
-}
\ No newline at end of file
+
+    // Annonces d'un rôle (stockées une seule fois, sans destinataire)
+    @Query("SELECT n FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id > :apresId ORDER BY n.dateCreation DESC")
+    List<Notification> findAnnoncesApres(@Param("audience") Role audience, @Param("apresId") Long apresId);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id > :apresId ORDER BY n.id")
+    List<Long> findIdsAnnoncesApres(@Param("audience") Role audience, @Param("apresId") Long apresId);
+
+    // Fenêtre bornée d'annonces après le seuil du marqueur de lecture
+    @Query("SELECT n.id FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id > :apresId ORDER BY n.id")
+    List<Long> findIdsAnnoncesApres(@Param("audience") Role audience, @Param("apresId") Long apresId,
+                                    Pageable pageable);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id < :avantId ORDER BY n.id DESC")
+    List<Long> findIdsAnnoncesAvant(@Param("audience") Role audience, @Param("avantId") Long avantId,
+                                    Pageable pageable);
+
+    @Query("SELECT MAX(n.id) FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience")
+    Long findMaxIdAnnonce(@Param("audience") Role audience);
+
+    @Query("SELECT MAX(n.id) FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id <= :maxId")
+    Long findMaxIdAnnonceJusqua(@Param("audience") Role audience, @Param("maxId") Long maxId);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id <= :maxId")
+    long countAnnoncesJusqua(@Param("audience") Role audience, @Param("maxId") Long maxId);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id IN :ids")
+    List<Long> findIdsAnnoncesParmi(@Param("audience") Role audience, @Param("ids") Collection<Long> ids);
+
+    // Marquages en une seule requête UPDATE : retournent le nombre de notifications passées à lue
+    @Modifying
+    @Query("UPDATE Notification n SET n.lue = true " +
+            "WHERE n.destinataire.id = :userId AND n.lue = false AND n.id <= :maxId")
+    int marquerLuesJusqua(@Param("userId") Long userId, @Param("maxId") Long maxId);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.lue = true " +
+            "WHERE n.destinataire.id = :userId AND n.lue = false AND n.id IN :ids")
+    int marquerLuesParmi(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    // Historique paginé par clé (ID décroissant) : lit au plus une page, quel que soit l'âge de la table
+    @Query("SELECT n FROM Notification n WHERE n.destinataire.id = :userId AND n.id < :avantId ORDER BY n.id DESC")
+    List<Notification> findHistorique(@Param("userId") Long userId, @Param("avantId") Long avantId,
+                                      Pageable pageable);
+
+    @Query("SELECT n FROM Notification n WHERE n.destinataire IS NULL AND n.audience = :audience " +
+            "AND n.id < :avantId ORDER BY n.id DESC")
+    List<Notification> findAnnoncesHistorique(@Param("audience") Role audience, @Param("avantId") Long avantId,
+                                              Pageable pageable);
+}
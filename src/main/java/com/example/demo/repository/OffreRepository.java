@@ -12,5 +12,6 @@ import java.util.Optional;
 public interface OffreRepository extends JpaRepository<Offre, Long> {
     // Modification : utilisez 'createur' au lieu de 'userId'
     List<Offre> findByCreateur(User createur);
+    List<Offre> findByCreateurId(Long createurId);
     Optional<Offre> findById(Long id);
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.OtpCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Les expirations utilisent l'horloge de la base, commune aux instances
+ */
+@Repository
+public interface OtpCodeRepository extends JpaRepository<OtpCode, String> {
+
+    // Un nouveau code remplace le précédent et remet les tentatives à zéro
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO otp_code (otp_key, code_hash, payload, attempts, expires_at) " +
+            "VALUES (:key, :codeHash, :payload, 0, TIMESTAMPADD(MICROSECOND, :ttlMillis * 1000, NOW(3))) " +
+            "ON DUPLICATE KEY UPDATE code_hash = VALUES(code_hash), payload = VALUES(payload), " +
+            "attempts = 0, expires_at = VALUES(expires_at)",
+            nativeQuery = true)
+    int enregistrer(@Param("key") String key, @Param("codeHash") String codeHash,
+                    @Param("payload") String payload, @Param("ttlMillis") long ttlMillis);
+
+    // Une tentative n'est comptée que sur un code valide et pas encore bloqué
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE otp_code SET attempts = attempts + 1 " +
+            "WHERE otp_key = :key AND expires_at > NOW(3) AND attempts < :maxAttempts",
+            nativeQuery = true)
+    int compterTentative(@Param("key") String key, @Param("maxAttempts") int maxAttempts);
+
+    // Suppression conditionnelle : un seul appelant consomme un code donné
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM otp_code WHERE otp_key = :key AND code_hash = :codeHash", nativeQuery = true)
+    int consommer(@Param("key") String key, @Param("codeHash") String codeHash);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM otp_code WHERE expires_at < NOW(3) LIMIT :limit", nativeQuery = true)
+    int purgerExpires(@Param("limit") int limit);
+}
@@ -2,11 +2,57 @@ package com.example.demo.repository;
 
 
 import com.example.demo.model.Reel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 
 public interface ReelRepository extends JpaRepository<Reel, Long> {
     List<Reel> findByUserId(Long userId); // Assurez-vous que cette méthode est présente
+
+    /**
+     * Projection du fil des reels : uniquement les colonnes affichées, sans entité User ni photo
+     */
+    interface ReelFeedItem {
+        Long getId();
+
+        String getTitle();
+
+        String getDescription();
+
+        String getOriginalFilename();
+
+        LocalDateTime getCreatedAt();
+
+        Long getAuthorId();
+
+        String getAuthorFirstName();
+
+        Boolean getAuthorHasPhoto();
+    }
+
+    // Première page du fil, du plus récent au plus ancien
+    @Query("SELECT r.id AS id, r.title AS title, r.description AS description, " +
+            "r.originalFilename AS originalFilename, r.createdAt AS createdAt, " +
+            "u.id AS authorId, u.firstName AS authorFirstName, " +
+            "CASE WHEN (u.photoPath IS NOT NULL OR u.photo IS NOT NULL) THEN true ELSE false END AS authorHasPhoto " +
+            "FROM Reel r JOIN r.user u " +
+            "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReelFeedItem> findFeed(Pageable pageable);
+
+    // Pages suivantes : pagination par clé (createdAt, id) à partir du dernier reel reçu
+    @Query("SELECT r.id AS id, r.title AS title, r.description AS description, " +
+            "r.originalFilename AS originalFilename, r.createdAt AS createdAt, " +
+            "u.id AS authorId, u.firstName AS authorFirstName, " +
+            "CASE WHEN (u.photoPath IS NOT NULL OR u.photo IS NOT NULL) THEN true ELSE false END AS authorHasPhoto " +
+            "FROM Reel r JOIN r.user u " +
+            "WHERE r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id) " +
+            "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReelFeedItem> findFeedAfter(@Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
 }
@@ -0,0 +1,35 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.UnreadCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, String> {
+
+    @Query("SELECT c.counterValue FROM UnreadCounter c WHERE c.counterKey = :counterKey")
+    Optional<Long> findValue(@Param("counterKey") String counterKey);
+
+    // Incrément atomique, créé à la volée ; le compteur ne descend jamais sous zéro
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO unread_counter (counter_key, counter_value, updated_at) " +
+            "VALUES (:counterKey, GREATEST(0, :delta), NOW()) " +
+            "ON DUPLICATE KEY UPDATE counter_value = GREATEST(0, counter_value + :delta), updated_at = NOW()",
+            nativeQuery = true)
+    int ajouter(@Param("counterKey") String counterKey, @Param("delta") long delta);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO unread_counter (counter_key, counter_value, updated_at) " +
+            "VALUES (:counterKey, :counterValue, NOW()) " +
+            "ON DUPLICATE KEY UPDATE counter_value = :counterValue, updated_at = NOW()",
+            nativeQuery = true)
+    int definir(@Param("counterKey") String counterKey, @Param("counterValue") long counterValue);
+}
@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.UploadSession;
+import com.example.demo.model.UploadStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Sessions abandonnées à nettoyer
+    List<UploadSession> findByStatusAndUpdatedAtBefore(UploadStatus status, LocalDateTime date);
+}
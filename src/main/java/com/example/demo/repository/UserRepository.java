@@ -1,5 +1,6 @@
 package com.example.demo.repository;
 
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -22,9 +23,26 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmailAndIdNot(String email, Long userId);
     Optional<User> findByEmail(String email);
     Optional<User> findByPhoneNumber(String phoneNumber);
+
+    // Recherche par numéro canonique (index unique phone_e164)
+    Optional<User> findByPhoneE164(String phoneE164);
+    boolean existsByPhoneE164(String phoneE164);
+
+    // Ancienne recherche, tant que phone_e164 n'est pas rempli pour tous : une requête pour toutes les variantes
+    Optional<User> findFirstByPhoneNumberIn(List<String> phoneNumbers);
+    boolean existsByPhoneNumberIn(List<String> phoneNumbers);
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.photos WHERE u.phoneNumber = :phoneNumber")
     Optional<User> findByPhoneNumberWithPhotos(@Param("phoneNumber") String phoneNumber);
 
     Optional<Object> findByIdAndRole(Long id, Role role);
 
+    // Résumé de l'utilisateur authentifié, sans relations ni photo
+    @Query("SELECT new com.example.demo.model.AuthenticatedUser(u.id, u.role, u.verified, u.phoneNumber) " +
+            "FROM User u WHERE u.id = :id")
+    Optional<AuthenticatedUser> findAuthenticatedUserById(@Param("id") Long id);
+
+    // Rôle seul, sans charger l'utilisateur (compteurs de non-lus)
+    @Query("SELECT u.role FROM User u WHERE u.id = :id")
+    Optional<Role> findRoleById(@Param("id") Long id);
+
 }
@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AuthenticatedUser;
+import com.example.demo.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Résumés des utilisateurs authentifiés (id, rôle, vérifié, numéro) gardés en mémoire :
+ * un appel authentifié ne relit pas la table user tant que le résumé est en cache.
+ * UserService invalide l'entrée à chaque changement de profil, de rôle ou de numéro ;
+ * les autres instances ne sont pas prévenues, d'où une durée de vie courte
+ */
+@Service
+@RequiredArgsConstructor
+public class AuthenticatedUserService {
+
+    private final UserRepository userRepository;
+
+    @Value("${auth.principal-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${auth.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private record CachedUser(AuthenticatedUser user, long loadedAt) {
+    }
+
+    private final Map<Long, CachedUser> cache = new ConcurrentHashMap<>();
+
+    public Optional<AuthenticatedUser> getById(Long userId) {
+        CachedUser cached = cache.get(userId);
+        if (cached != null && System.nanoTime() - cached.loadedAt() < TimeUnit.SECONDS.toNanos(ttlSeconds)) {
+            return Optional.of(cached.user());
+        }
+        Optional<AuthenticatedUser> user = userRepository.findAuthenticatedUserById(userId);
+        if (user.isPresent()) {
+            if (cache.size() >= maxEntries) {
+                cache.clear();
+            }
+            cache.put(userId, new CachedUser(user.get(), System.nanoTime()));
+        } else {
+            cache.remove(userId);
+        }
+        return user;
+    }
+
+    /**
+     * Retirer le résumé après le commit de la modification (sinon il serait rechargé avec l'ancienne valeur)
+     */
+    public void invalider(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        cache.remove(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.remove(userId);
+                }
+            });
+        }
+    }
+}
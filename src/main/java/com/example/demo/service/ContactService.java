@@ -22,6 +22,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -29,12 +30,20 @@ import java.util.stream.Collectors;
 @Validated
 public class ContactService {
 
+    private static final int MAX_IDS_PAR_MARQUAGE = 1000;
+
     @Autowired
     private ContactMessageRepository contactMessageRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private NotificationPushService notificationPushService;
+
     /**
      * Vérifie si une chaîne est vide ou ne contient que des espaces
      */
@@ -236,9 +245,12 @@ public class ContactService {
 
         // Sauvegarde en base de données
         ContactMessage savedMessage = contactMessageRepository.save(contactMessage);
+        unreadCounterService.messageCree(coach.getId());
 
-        // Conversion en DTO pour la réponse
-        return ContactMessageResponseDTO.fromEntity(savedMessage);
+        // Conversion en DTO pour la réponse, poussée aussi au coach s'il est connecté
+        ContactMessageResponseDTO response = ContactMessageResponseDTO.fromEntity(savedMessage);
+        notificationPushService.envoyerMessageContact(coach.getId(), response);
+        return response;
     }
 
     /**
@@ -329,26 +341,75 @@ public class ContactService {
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "Message non trouvé avec l'ID : " + messageId));
 
+        if (message.isLu()) {
+            return ContactMessageResponseDTO.fromEntity(message);
+        }
         message.setLu(true);
         ContactMessage updatedMessage = contactMessageRepository.save(message);
+        unreadCounterService.messagesLus(message.getCoach().getId(), 1);
 
         return ContactMessageResponseDTO.fromEntity(updatedMessage);
     }
 
+    /**
+     * Marque comme lus tous les messages d'un coach (une seule requête UPDATE)
+     * @return nombre de messages passés à lu
+     */
+    @Transactional
+    public int markAllAsRead(Long coachId) {
+        return markAsReadUpTo(coachId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Marque comme lus les messages d'un coach d'ID inférieur ou égal à maxId
+     */
+    @Transactional
+    public int markAsReadUpTo(Long coachId, Long maxId) {
+        verifierCoach(coachId);
+        int count = contactMessageRepository.marquerLusJusqua(coachId, maxId);
+        unreadCounterService.messagesLus(coachId, count);
+        return count;
+    }
+
+    /**
+     * Marque comme lus les messages de la liste ; ceux d'un autre coach sont ignorés
+     */
+    @Transactional
+    public int markAsRead(Long coachId, List<Long> messageIds) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+        if (messageIds.size() > MAX_IDS_PAR_MARQUAGE) {
+            throw new IllegalArgumentException("Trop de messages (maximum " + MAX_IDS_PAR_MARQUAGE + ")");
+        }
+        verifierCoach(coachId);
+        int count = contactMessageRepository.marquerLusParmi(coachId, messageIds);
+        unreadCounterService.messagesLus(coachId, count);
+        return count;
+    }
+
     /**
      * Compte les messages non lus pour un coach
      */
     public Long countUnreadMessages(Long coachId) {
-        User coach = userRepository.findById(coachId)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Coach non trouvé avec l'ID : " + coachId));
+        // Rôle en cache et compteur tenu à jour : ni l'utilisateur ni les messages ne sont relus
+        verifierCoach(coachId);
+        return unreadCounterService.getMessagesNonLus(coachId);
+    }
 
-        if (coach.getRole() != Role.COACH) {
+    private void verifierCoach(Long coachId) {
+        Role role;
+        try {
+            role = unreadCounterService.getRole(coachId);
+        } catch (NoSuchElementException e) {
             throw new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST, "L'utilisateur doit être un coach");
+                    HttpStatus.NOT_FOUND, "Coach non trouvé avec l'ID : " + coachId);
         }
 
-        return contactMessageRepository.countByCoachAndLu(coach, false);
+        if (role != Role.COACH) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "L'utilisateur doit être un coach");
+        }
     }
 }
     /**
@@ -7,15 +7,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +33,25 @@ public class CourseService {
     private final ExerciseVideoRepository videoRepository;
     private final UserRepository userRepository;
     private final EnrollmentRepository enrollmentRepository;
+    private final MediaStore mediaStore;
+    private final ImageDerivativeService imageDerivativeService;
+    private final MediaCache mediaCache;
+    private final Mp4FaststartService mp4FaststartService;
+    private final MediaIngestionService mediaIngestionService;
+    private final TransactionTemplate transactionTemplate;
+
+    // Chemin de miniature par cours ("" si aucune), pour servir les miniatures sans requête en base.
+    // Les autres instances ne préviennent pas ce cache : un chemin n'est gardé que quelques secondes
+    private record CachedPath(String path, long loadedAt) {
+    }
+
+    private final Map<Long, CachedPath> thumbnailPaths = new ConcurrentHashMap<>();
+
+    @Value("${courses.thumbnail-cache.ttl-seconds:30}")
+    private long thumbnailCacheTtlSeconds;
+
+    @Value("${courses.thumbnail-cache.max-entries:10000}")
+    private int thumbnailCacheMaxEntries;
     // Upload paths
     @Value("${upload.path.thumbnail}")
     private String thumbnailUploadPath;
@@ -68,42 +92,83 @@ public class CourseService {
         // Copier le fichier
         Files.copy(thumbnailFile.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
 
+        // Préparer les tailles réduites pour les listes de cours
+        imageDerivativeService.genererDerivesAsync(targetLocation);
+
         return uniqueFileName;
     }
 
     /**
      * Sauvegarder un fichier vidéo
+     * Stockage dédupliqué : le chemin relatif (ab/cd/<sha256>.mp4) reste résolu depuis upload.path.video.
+     * Le MP4 est réécrit en faststart avant d'être rangé pour démarrer la lecture sans attendre la fin du fichier
      */
     private String saveVideoFile(MultipartFile videoFile) throws IOException {
         if (videoFile == null || videoFile.isEmpty()) {
             return null;
         }
+        return mediaStore.store(videoFile, Paths.get(videoUploadPath), ".mp4",
+                mp4FaststartService::rendreProgressif).relativePath();
+    }
 
-        // Créer le répertoire s'il n'existe pas
-        Path uploadDir = Paths.get(videoUploadPath);
-        Files.createDirectories(uploadDir);
-
-        // Générer un nom de fichier unique
-        String uniqueFileName = generateUniqueFileName(videoFile.getOriginalFilename());
-
-        // Chemin complet du fichier
-        Path targetLocation = uploadDir.resolve(uniqueFileName);
-
-        // Copier le fichier
-        Files.copy(videoFile.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Durée réelle d'une vidéo stockée, lue dans le fichier MP4 (0 si elle est illisible)
+     */
+    private int lireDureeVideo(String videoPath) {
+        Integer duration = mp4FaststartService.lireDureeSecondes(Paths.get(videoUploadPath, videoPath));
+        return duration != null ? duration : 0;
+    }
 
-        return uniqueFileName;
+    /**
+     * Fichier écrit pendant la préparation d'un cours : la miniature (exerciseIndex = -1)
+     * ou la vidéo d'un exercice avec sa durée lue dans le MP4
+     */
+    private record StagedFile(int exerciseIndex, String path, String originalFilename, int durationSeconds) {
     }
 
     /**
-     * Créer un nouveau cours avec ses exercices
+     * Créer un nouveau cours avec ses exercices.
+     * Les fichiers sont d'abord écrits en parallèle, hors transaction, puis le cours, ses exercices
+     * et leurs vidéos sont enregistrés dans une transaction courte. Si une étape échoue,
+     * les fichiers déjà écrits sont libérés
      */
-    @Transactional
     public Course createCourseWithExercises(CourseRequest courseRequest, User coach) throws IOException {
-        // Validation du cours
+        // Tout valider avant d'écrire le moindre fichier
         validateCourseRequest(courseRequest);
+        List<ExerciseRequest> exerciseRequests = courseRequest.getExercises() != null
+                ? courseRequest.getExercises() : Collections.emptyList();
+        exerciseRequests.forEach(this::validateExerciseRequest);
+
+        // Étape 1 : écriture des fichiers, sans connexion à la base
+        List<Callable<StagedFile>> stages = new ArrayList<>();
+        MultipartFile thumbnail = courseRequest.getThumbnail();
+        if (thumbnail != null && !thumbnail.isEmpty()) {
+            stages.add(() -> new StagedFile(-1, saveThumbnailFile(thumbnail), thumbnail.getOriginalFilename(), 0));
+        }
+        for (int i = 0; i < exerciseRequests.size(); i++) {
+            int index = i;
+            MultipartFile videoFile = exerciseRequests.get(i).getVideo();
+            if (videoFile != null && !videoFile.isEmpty()) {
+                stages.add(() -> {
+                    String videoPath = saveVideoFile(videoFile);
+                    return new StagedFile(index, videoPath, videoFile.getOriginalFilename(), lireDureeVideo(videoPath));
+                });
+            }
+        }
+        List<StagedFile> stagedFiles = mediaIngestionService.executerEtapes(stages, this::compenserFichier);
 
-        // Créer le cours
+        // Étape 2 : enregistrement groupé ; les exercices et vidéos suivent le cours par cascade
+        try {
+            return transactionTemplate.execute(status ->
+                    courseRepository.save(buildCourse(courseRequest, exerciseRequests, stagedFiles, coach)));
+        } catch (RuntimeException e) {
+            mediaIngestionService.compenser(stagedFiles, this::compenserFichier);
+            throw e;
+        }
+    }
+
+    private Course buildCourse(CourseRequest courseRequest, List<ExerciseRequest> exerciseRequests,
+                               List<StagedFile> stagedFiles, User coach) {
         Course course = new Course();
         course.setTitle(courseRequest.getTitle());
         course.setDescription(courseRequest.getDescription());
@@ -114,33 +179,68 @@ public class CourseService {
         course.setFirstVideoFree(courseRequest.isFirstVideoFree());
         course.setCoach(coach);
 
-        // Initialiser exerciseCount à 0 par défaut
-        course.setExerciseCount(0);
-
-        // Gérer la miniature - modifié pour utiliser le chemin au lieu du BLOB
-        if (courseRequest.getThumbnail() != null) {
-            course.setThumbnailPath(saveThumbnailFile(courseRequest.getThumbnail()));
+        Map<Integer, StagedFile> videosByExercise = new HashMap<>();
+        for (StagedFile stagedFile : stagedFiles) {
+            if (stagedFile.exerciseIndex() < 0) {
+                course.setThumbnailPath(stagedFile.path());
+            } else {
+                videosByExercise.put(stagedFile.exerciseIndex(), stagedFile);
+            }
         }
 
-        // Sauvegarder le cours initial
-        Course savedCourse = courseRepository.save(course);
-
-        // Créer les exercices si présents
-        if (courseRequest.getExercises() != null && !courseRequest.getExercises().isEmpty()) {
-            List<CourseExercise> exercises = new ArrayList<>();
-
-            for (int i = 0; i < courseRequest.getExercises().size(); i++) {
-                ExerciseRequest exerciseRequest = courseRequest.getExercises().get(i);
-                CourseExercise exercise = createCourseExercise(exerciseRequest, savedCourse, coach, i);
-                exercises.add(exercise);
+        List<CourseExercise> exercises = new ArrayList<>();
+        for (int i = 0; i < exerciseRequests.size(); i++) {
+            ExerciseRequest exerciseRequest = exerciseRequests.get(i);
+            CourseExercise exercise = new CourseExercise();
+            exercise.setName(exerciseRequest.getName());
+            exercise.setDescription(exerciseRequest.getDescription());
+            exercise.setDurationSeconds(exerciseRequest.getDurationSeconds());
+            exercise.setRepetitions(exerciseRequest.getRepetitions());
+            exercise.setOrderIndex(i);
+            exercise.setLocked(exerciseRequest.isLocked());
+            exercise.setFreePreview(exerciseRequest.isFreePreview());
+            exercise.setCourse(course);
+
+            StagedFile stagedVideo = videosByExercise.get(i);
+            if (stagedVideo != null) {
+                ExerciseVideo video = new ExerciseVideo();
+                video.setTitle(exercise.getName());
+                video.setDescription(exercise.getDescription());
+                video.setVideoPath(stagedVideo.path());
+                video.setOriginalFilename(stagedVideo.originalFilename());
+                // La durée lue dans le fichier prime sur celle saisie pour l'exercice
+                video.setDurationSeconds(stagedVideo.durationSeconds() > 0
+                        ? stagedVideo.durationSeconds() : exercise.getDurationSeconds());
+                video.setPreview(exercise.isFreePreview());
+                video.setCoachId(coach.getId());
+                video.setExercise(exercise);
+                exercise.setVideo(video);
             }
-
-            // Mettre à jour le nombre d'exercices
-            savedCourse.setExerciseCount(exercises.size());
-            savedCourse.setExercises(exercises);
+            exercises.add(exercise);
         }
+        course.setExercises(exercises);
+        course.setExerciseCount(exercises.size());
+        return course;
+    }
 
-        return courseRepository.save(savedCourse);
+    /**
+     * Compensation d'un fichier écrit pour un cours qui n'a pas pu être créé
+     */
+    private void compenserFichier(StagedFile stagedFile) {
+        if (stagedFile.path() == null) {
+            return;
+        }
+        if (stagedFile.exerciseIndex() >= 0) {
+            deleteVideoFile(stagedFile.path());
+            return;
+        }
+        Path thumbnailFile = Paths.get(thumbnailUploadPath, stagedFile.path());
+        try {
+            Files.deleteIfExists(thumbnailFile);
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer la miniature {}: {}", thumbnailFile, e.getMessage());
+        }
+        imageDerivativeService.supprimerDerives(thumbnailFile);
     }
 
     /**
@@ -192,8 +292,8 @@ public class CourseService {
         video.setTitle("Vidéo d'exercice");  // Titre temporaire, sera mis à jour après
         video.setDescription("Description de vidéo");  // Description temporaire
         video.setVideoPath(saveVideoFile(videoFile));
+        video.setDurationSeconds(lireDureeVideo(video.getVideoPath()));
         video.setOriginalFilename(videoFile.getOriginalFilename());
-        video.setDurationSeconds(0);  // Sera mis à jour après
         video.setPreview(false);  // Sera mis à jour après
         video.setCoachId(coach.getId());  // Utiliser l'ID du coach au lieu de l'objet coach
         // Ne pas définir l'exercice ici pour éviter les références circulaires
@@ -207,7 +307,10 @@ public class CourseService {
     private void updateVideoInfo(ExerciseVideo video, CourseExercise exercise) {
         video.setTitle(exercise.getName());
         video.setDescription(exercise.getDescription());
-        video.setDurationSeconds(exercise.getDurationSeconds());
+        // La durée lue dans le fichier prime sur celle saisie pour l'exercice
+        if (video.getDurationSeconds() == null || video.getDurationSeconds() == 0) {
+            video.setDurationSeconds(exercise.getDurationSeconds());
+        }
         video.setPreview(exercise.isFreePreview());
         video.setExercise(exercise);
         videoRepository.save(video);
@@ -265,11 +368,14 @@ public class CourseService {
                 try {
                     Path fullPath = Paths.get(thumbnailUploadPath, existingCourse.getThumbnailPath());
                     Files.deleteIfExists(fullPath);
+                    mediaCache.invalidate(fullPath);
+                    imageDerivativeService.supprimerDerives(fullPath);
                 } catch (IOException e) {
                     log.warn("Impossible de supprimer l'ancienne miniature: {}", e.getMessage());
                 }
             }
             existingCourse.setThumbnailPath(saveThumbnailFile(request.getThumbnail()));
+            thumbnailPaths.remove(courseId);
         }
 
         // Mettre à jour les exercices
@@ -339,6 +445,8 @@ public class CourseService {
             try {
                 Path fullPath = Paths.get(thumbnailUploadPath, course.getThumbnailPath());
                 Files.deleteIfExists(fullPath);
+                mediaCache.invalidate(fullPath);
+                imageDerivativeService.supprimerDerives(fullPath);
             } catch (IOException e) {
                 log.warn("Impossible de supprimer la miniature: {}", e.getMessage());
             }
@@ -352,6 +460,7 @@ public class CourseService {
         }
 
         courseRepository.delete(course);
+        thumbnailPaths.remove(courseId);
     }
 
     /**
@@ -399,19 +508,13 @@ public class CourseService {
     }
 
     /**
-     * Supprimer un fichier vidéo
+     * Libérer le fichier vidéo : il n'est supprimé que lorsque plus aucune vidéo ne le partage
      */
     private void deleteVideoFile(String videoPath) {
         if (videoPath == null || videoPath.isEmpty()) {
             return;
         }
-
-        try {
-            Path fullPath = Paths.get(videoUploadPath, videoPath);
-            Files.deleteIfExists(fullPath);
-        } catch (IOException e) {
-            log.error("Erreur lors de la suppression du fichier vidéo : {}", videoPath, e);
-        }
+        mediaStore.release(Paths.get(videoUploadPath, videoPath));
     }
 
     /**
@@ -450,6 +553,44 @@ public class CourseService {
         return exerciseRepository.findById(exerciseId);
     }
 
+    /**
+     * Exercice appartenant au coach, vérifié avant d'accepter un fichier pour lui
+     */
+    public CourseExercise getExerciseOfCoach(Long exerciseId, Long coachId) {
+        CourseExercise exercise = exerciseRepository.findById(exerciseId)
+                .orElseThrow(() -> new NoSuchElementException("Exercice non trouvé"));
+        if (exercise.getCourse() == null || !exercise.getCourse().getCoach().getId().equals(coachId)) {
+            throw new IllegalArgumentException("L'exercice n'appartient pas à ce coach");
+        }
+        return exercise;
+    }
+
+    /**
+     * Rattacher une vidéo déjà stockée (upload par morceaux) à un exercice existant.
+     * Une vidéo déjà présente est remplacée et son fichier libéré
+     */
+    @Transactional
+    public ExerciseVideo attachExerciseVideo(Long exerciseId, Long coachId,
+                                             MediaStore.StoredMedia stored, String originalFilename) {
+        CourseExercise exercise = getExerciseOfCoach(exerciseId, coachId);
+
+        ExerciseVideo video = exercise.getVideo();
+        if (video == null) {
+            video = new ExerciseVideo();
+            video.setCoachId(coachId);
+        } else {
+            deleteVideoFile(video.getVideoPath());
+        }
+        video.setVideoPath(stored.relativePath());
+        video.setOriginalFilename(originalFilename);
+        video.setDurationSeconds(lireDureeVideo(stored.relativePath()));
+        updateVideoInfo(video, exercise);
+
+        exercise.setVideo(video);
+        exerciseRepository.save(exercise);
+        return video;
+    }
+
     /**
      * Créer un exercice pour un cours
      */
@@ -497,51 +638,35 @@ public class CourseService {
     }
 
     /**
-     * Récupérer les données d'une vidéo d'exercice
+     * Récupérer le fichier de la vidéo d'un exercice
+     * Le fichier n'est jamais lu en mémoire : l'appelant le diffuse par plages
      */
-    public byte[] getExerciseVideoBytes(Long exerciseId) {
-        log.info("Demande de vidéo pour l'exercice ID: {}", exerciseId);
-
+    public Path getExerciseVideoFile(Long exerciseId) {
         Optional<CourseExercise> exerciseOpt = exerciseRepository.findById(exerciseId);
         if (exerciseOpt.isEmpty()) {
             log.warn("Exercice non trouvé avec l'ID: {}", exerciseId);
             return null;
         }
 
-        CourseExercise exercise = exerciseOpt.get();
-        log.info("Exercice trouvé: {}", exercise.getName());
-
-        if (exercise.getVideo() == null) {
+        ExerciseVideo video = exerciseOpt.get().getVideo();
+        if (video == null) {
             log.warn("Pas de vidéo associée à l'exercice ID: {}", exerciseId);
             return null;
         }
 
-        log.info("Vidéo trouvée avec ID: {}", exercise.getVideo().getId());
-
-        String videoPath = exercise.getVideo().getVideoPath();
+        String videoPath = video.getVideoPath();
         if (videoPath == null || videoPath.isEmpty()) {
             log.warn("Chemin de vidéo vide pour l'exercice ID: {}", exerciseId);
             return null;
         }
 
-        log.info("Chemin de la vidéo: {}", videoPath);
-
-        try {
-            Path fullPath = Paths.get(videoUploadPath, videoPath);
-            log.info("Chemin complet de la vidéo: {}", fullPath.toAbsolutePath());
-
-            if (!Files.exists(fullPath)) {
-                log.warn("Le fichier vidéo n'existe pas à: {}", fullPath.toAbsolutePath());
-                return null;
-            }
-
-            byte[] videoBytes = Files.readAllBytes(fullPath);
-            log.info("Vidéo lue avec succès, taille: {} octets", videoBytes.length);
-            return videoBytes;
-        } catch (IOException e) {
-            log.error("Impossible de lire la vidéo de l'exercice {}: {}", exerciseId, e.getMessage(), e);
-            return null; // Retourne null au lieu de lancer une exception
+        Path fullPath = Paths.get(videoUploadPath, videoPath);
+        if (!Files.isReadable(fullPath)) {
+            log.warn("Le fichier vidéo n'existe pas à: {}", fullPath.toAbsolutePath());
+            return null;
         }
+
+        return fullPath;
     }
 
     /**
@@ -573,28 +698,65 @@ public class CourseService {
     /**
      * Récupérer la miniature d'un cours
      */
-    public byte[] getCourseThumbnail(Long courseId) {
-        Course course = courseRepository.findById(courseId)
-                .orElseThrow(() -> new NoSuchElementException("Cours non trouvé"));
+    public ImageDerivativeService.Image getCourseThumbnail(Long courseId) {
+        return getCourseThumbnail(courseId, null);
+    }
 
-        if (course.getThumbnailPath() == null || course.getThumbnailPath().isEmpty()) {
-            return null;
+    /**
+     * Récupérer la miniature d'un cours dans une taille donnée (small, medium, large)
+     */
+    public ImageDerivativeService.Image getCourseThumbnail(Long courseId, String size) {
+        CachedPath cached = thumbnailPaths.get(courseId);
+        boolean relu = cached == null || expire(cached);
+        if (relu) {
+            cached = chargerCheminMiniature(courseId);
         }
 
         try {
-            Path fullPath = Paths.get(thumbnailUploadPath, course.getThumbnailPath());
-            if (!Files.exists(fullPath)) {
-                log.warn("Le fichier de miniature n'existe pas à: {}", fullPath.toAbsolutePath());
+            return lireMiniature(cached.path(), size);
+        } catch (NoSuchFileException e) {
+            if (relu) {
+                log.warn("Le fichier de miniature n'existe pas à: {}", e.getFile());
+                return null;
+            }
+            // Miniature remplacée par une autre instance : le chemin est relu en base une fois
+            try {
+                return lireMiniature(chargerCheminMiniature(courseId).path(), size);
+            } catch (IOException retryException) {
+                log.warn("Le fichier de miniature n'existe pas à: {}", e.getFile());
                 return null;
             }
-
-            return Files.readAllBytes(fullPath);
         } catch (IOException e) {
             log.error("Impossible de lire la miniature du cours {}: {}", courseId, e.getMessage(), e);
             return null;
         }
     }
 
+    private ImageDerivativeService.Image lireMiniature(String thumbnailPath, String size) throws IOException {
+        if (thumbnailPath.isEmpty()) {
+            return null;
+        }
+        Path imagePath = imageDerivativeService.resolve(Paths.get(thumbnailUploadPath, thumbnailPath), size);
+        return new ImageDerivativeService.Image(mediaCache.open(imagePath),
+                ImageDerivativeService.mediaTypeOf(imagePath));
+    }
+
+    private CachedPath chargerCheminMiniature(Long courseId) {
+        Course course = courseRepository.findById(courseId)
+                .orElseThrow(() -> new NoSuchElementException("Cours non trouvé"));
+        CachedPath cached = new CachedPath(course.getThumbnailPath() != null ? course.getThumbnailPath() : "",
+                System.nanoTime());
+        if (thumbnailPaths.size() >= thumbnailCacheMaxEntries) {
+            thumbnailPaths.clear();
+        }
+        thumbnailPaths.put(courseId, cached);
+        return cached;
+    }
+
+    private boolean expire(CachedPath cached) {
+        return System.nanoTime() - cached.loadedAt() > TimeUnit.SECONDS.toNanos(thumbnailCacheTtlSeconds);
+    }
+
     /**
      * Classe de requête pour la création/mise à jour de cours
      */
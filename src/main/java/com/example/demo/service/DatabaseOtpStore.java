@@ -0,0 +1,55 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.OtpCodeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Codes partagés entre les instances dans la table otp_code (otp.store=database, par défaut).
+ * Une vérification coûte une écriture sur cette petite table, jamais sur la ligne de l'utilisateur
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "otp.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseOtpStore implements OtpStore {
+
+    private final OtpCodeRepository otpCodeRepository;
+
+    @Value("${otp.database.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    @Override
+    public void enregistrer(String key, Otp otp, Duration ttl) {
+        otpCodeRepository.enregistrer(key, otp.codeHash(), otp.payload(), ttl.toMillis());
+    }
+
+    @Override
+    public Optional<Otp> tenter(String key, int maxAttempts) {
+        if (otpCodeRepository.compterTentative(key, maxAttempts) == 0) {
+            return Optional.empty();
+        }
+        return otpCodeRepository.findById(key)
+                .map(code -> new Otp(code.getCodeHash(), code.getPayload()));
+    }
+
+    @Override
+    public boolean consommer(String key, String codeHash) {
+        return otpCodeRepository.consommer(key, codeHash) > 0;
+    }
+
+    @Override
+    public int purgerExpires() {
+        int total = 0;
+        int supprimes;
+        do {
+            supprimes = otpCodeRepository.purgerExpires(purgeBatchSize);
+            total += supprimes;
+        } while (supprimes == purgeBatchSize);
+        return total;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Event;
+import com.example.demo.model.EventReminderCheckpoint;
+import com.example.demo.model.Notification;
+import com.example.demo.repository.EventParticipationRepository;
+import com.example.demo.repository.EventParticipationRepository.ReminderTarget;
+import com.example.demo.repository.EventReminderCheckpointRepository;
+import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rappels de la veille envoyés uniquement aux inscrits des événements.
+ * Les inscriptions sont parcourues par lots (pagination par ID), chaque lot dans sa propre
+ * transaction qui enregistre aussi le point de reprise : un arrêt en cours d'envoi
+ * reprend au lot suivant sans renvoyer de rappel.
+ * Avec plusieurs instances, chaque partition n'est traitée que par le détenteur de son bail
+ * (reminders.partitions ne doit changer qu'entre deux journées d'envoi).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventReminderService {
+
+    private final EventRepository eventRepository;
+    private final EventParticipationRepository participationRepository;
+    private final EventReminderCheckpointRepository checkpointRepository;
+    private final UserRepository userRepository;
+    private final NotificationBulkWriter notificationBulkWriter;
+    private final UnreadCounterService unreadCounterService;
+    private final NotificationPushService notificationPushService;
+    private final JobLeaseService jobLeaseService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${reminders.batch-size:500}")
+    private int batchSize;
+
+    @Value("${reminders.partitions:1}")
+    private int partitions;
+
+    // Taille des blocs d'IDs répartis entre les partitions
+    @Value("${reminders.partition-block-size:1000}")
+    private long partitionBlockSize;
+
+    // Renouvelé à chaque lot : doit couvrir largement la durée d'un lot
+    @Value("${reminders.lease-ttl-ms:300000}")
+    private long leaseTtlMs;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * Envoyer (ou terminer d'envoyer) les rappels des événements du jour donné.
+     * Retourne le nombre de rappels envoyés par cette instance
+     */
+    public long envoyerRappels(LocalDate eventDate) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Envoi des rappels déjà en cours, appel ignoré");
+            return 0;
+        }
+        try {
+            Map<Long, Event> events = new HashMap<>();
+            for (Event event : eventRepository.findByDate(eventDate)) {
+                events.put(event.getId(), event);
+            }
+
+            AtomicLong envoyes = new AtomicLong();
+            int traitees = jobLeaseService.executerParPartitions("event-reminders:" + eventDate, partitions,
+                    Duration.ofMillis(leaseTtlMs),
+                    (lease, partition, total) ->
+                            envoyes.addAndGet(envoyerPartition(eventDate, events, lease, partition, total)));
+
+            log.info("Rappels des événements du {} : {} envoyés, {} partition(s) traitée(s) par cette instance",
+                    eventDate, envoyes.get(), traitees);
+            return envoyes.get();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Reprendre un envoi interrompu (crash, redémarrage) pour la date donnée
+     */
+    public long reprendreSiInterrompu(LocalDate eventDate) {
+        if (!checkpointRepository.existsByEventDateAndCompletedFalse(eventDate)) {
+            return 0;
+        }
+        return envoyerRappels(eventDate);
+    }
+
+    private long envoyerPartition(LocalDate eventDate, Map<Long, Event> events, JobLeaseService.Lease lease,
+                                  int partition, int total) {
+        EventReminderCheckpoint checkpoint = checkpointRepository
+                .findById(EventReminderCheckpoint.cle(eventDate, partition, total))
+                .orElseGet(() -> new EventReminderCheckpoint(eventDate, partition, total));
+        if (checkpoint.isCompleted()) {
+            return 0;
+        }
+
+        long envoyes = 0;
+        while (true) {
+            List<ReminderTarget> lot = participationRepository.findReminderTargets(eventDate,
+                    checkpoint.getLastParticipationId(), partitionBlockSize, total, partition, batchSize);
+            if (lot.isEmpty()) {
+                EventReminderCheckpoint termine = checkpoint;
+                checkpoint = transactionTemplate.execute(status -> {
+                    jobLeaseService.exiger(lease);
+                    termine.setCompleted(true);
+                    return checkpointRepository.save(termine);
+                });
+                break;
+            }
+            EventReminderCheckpoint current = checkpoint;
+            checkpoint = transactionTemplate.execute(status -> {
+                // Lot annulé si une autre instance a repris le bail entre-temps
+                jobLeaseService.exiger(lease);
+                return envoyerLot(current, lot, events);
+            });
+            envoyes += lot.size();
+        }
+        return envoyes;
+    }
+
+    /**
+     * Un lot : les notifications, les compteurs et le point de reprise sont écrits ensemble
+     */
+    private EventReminderCheckpoint envoyerLot(EventReminderCheckpoint checkpoint, List<ReminderTarget> lot,
+                                               Map<Long, Event> events) {
+        List<Notification> rappels = new ArrayList<>(lot.size());
+        for (ReminderTarget target : lot) {
+            Event event = events.get(target.getEventId());
+            if (event == null) {
+                continue;
+            }
+            rappels.add(new Notification(
+                    "Rappel: événement demain",
+                    "Rappel: L'événement \"" + event.getTitre() + "\" aura lieu demain " +
+                            event.getDate() + " à " + event.getHeureDebut() + ", " +
+                            event.getAdresse() + ". Prix: " + event.getPrix() + "€",
+                    userRepository.getReferenceById(target.getUserId()),
+                    Notification.NotificationType.EVENEMENT_RAPPEL,
+                    event.getId()
+            ));
+        }
+        notificationBulkWriter.inserer(rappels);
+
+        for (Notification rappel : rappels) {
+            Long userId = rappel.getDestinataire().getId();
+            unreadCounterService.notificationCreee(userId);
+            // Insertion en masse : les ID ne sont pas relus, le client recharge ses notifications
+            if (notificationPushService.estConnecte(userId)) {
+                notificationPushService.envoyerRafraichissement(userId);
+            }
+        }
+
+        checkpoint.setLastParticipationId(lot.get(lot.size() - 1).getId());
+        checkpoint.setSentCount(checkpoint.getSentCount() + rappels.size());
+        return checkpointRepository.save(checkpoint);
+    }
+}
@@ -1,17 +1,25 @@
 package com.example.demo.service;
 
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Event;
+import com.example.demo.model.OutboxEventType;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import com.example.demo.repository.EventRepository;
 import com.example.demo.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,17 +34,24 @@ public class EventService {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private NotificationService notificationService;
+    private NotificationOutboxService notificationOutboxService;
 
-    @Transactional
-    public Event createEvent(String phoneNumber, EventDto eventDto) {
-        User createur = userRepository.findByPhoneNumber(phoneNumber)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+    @Autowired
+    private MediaBlobStore mediaBlobStore;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
+    @Transactional
+    public Event createEvent(AuthenticatedUser auteur, EventDto eventDto) {
         // Vérification du rôle
-        if (createur.getRole() != Role.COACH && createur.getRole() != Role.GYM) {
+        if (!auteur.hasRole(Role.COACH, Role.GYM)) {
             throw new RuntimeException("Seuls les coachs et les gyms peuvent créer des événements");
         }
+        User createur = userRepository.getReferenceById(auteur.id());
 
         Event event = new Event();
         event.setTitre(eventDto.getTitre());
@@ -49,42 +64,74 @@ public class EventService {
         event.setReglement(eventDto.getReglement());
         event.setCreateur(createur);
 
-        // Ajouter la photo si présente
+        // Ajouter la photo si présente (stockée sur disque, plus en BLOB)
         if (eventDto.getPhoto() != null) {
-            event.setPhoto(eventDto.getPhoto());
+            event.setPhotoPath(mediaBlobStore.store(eventDto.getPhoto()));
+            imageDerivativeService.genererDerivesAsync(mediaBlobStore.resolvePath(event.getPhotoPath()));
         }
 
         Event eventCree = eventRepository.save(event);
 
-        // Ajouter cette ligne pour envoyer les notifications
-        notificationService.notifierNouvelEvenement(eventCree);
+        // Diffusion en arrière-plan : seule la ligne d'outbox est écrite dans cette transaction
+        notificationOutboxService.publier(OutboxEventType.NOUVEL_EVENEMENT, eventCree.getId());
 
         return eventCree;
     }
 
     @Transactional(readOnly = true)
-    public List<Event> getEventsUtilisateur(String phoneNumber) {
-        User createur = userRepository.findByPhoneNumber(phoneNumber)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        return eventRepository.findByCreateur(createur);
+    public List<Event> getEventsUtilisateur(Long userId) {
+        return avecPhotos(eventRepository.findByCreateurId(userId));
     }
 
     @Transactional(readOnly = true)
     public Optional<Event> getEventById(Long id) {
-        return eventRepository.findById(id);
+        return eventRepository.findById(id).map(this::avecPhoto);
+    }
+
+    /**
+     * Photo d'un événement : fichier du stockage média, ou ancien BLOB pendant la migration
+     */
+    @Transactional(readOnly = true)
+    public Optional<ImageDerivativeService.Image> getEventPhoto(Long id, String size) {
+        return eventRepository.findById(id).map(event -> {
+            if (event.getPhotoPath() != null) {
+                // Version réduite si demandée ; les anciens BLOB n'en ont pas
+                Path path = imageDerivativeService.resolve(mediaBlobStore.resolvePath(event.getPhotoPath()), size);
+                Resource content = mediaBlobStore.open(path.getFileName().toString());
+                if (content != null) {
+                    return new ImageDerivativeService.Image(content, ImageDerivativeService.mediaTypeOf(path));
+                }
+            }
+            // Ancien BLOB : le type n'est pas connu, servi en JPEG comme auparavant
+            byte[] data = mediaBlobStore.resolve(event.getPhoto(), event.getPhotoPath());
+            return data != null ? new ImageDerivativeService.Image(new ByteArrayResource(data), MediaType.IMAGE_JPEG) : null;
+        });
+    }
+
+    /**
+     * Pendant la migration, les clients lisent encore le champ "photo" du JSON :
+     * on le remplit depuis le fichier sur une copie détachée pour ne rien réécrire en base
+     */
+    private Event avecPhoto(Event event) {
+        if (mediaBlobStore.isDualRead() && event.getPhoto() == null && event.getPhotoPath() != null) {
+            entityManager.detach(event);
+            event.setPhoto(mediaBlobStore.read(event.getPhotoPath()));
+        }
+        return event;
+    }
+
+    private List<Event> avecPhotos(List<Event> events) {
+        events.forEach(this::avecPhoto);
+        return events;
     }
 
     @Transactional
-    public Event modifierEvent(Long id, String phoneNumber, EventDto eventDto) {
+    public Event modifierEvent(Long id, Long userId, EventDto eventDto) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Événement non trouvé"));
 
         // Vérifier que l'utilisateur est le créateur
-        User user = userRepository.findByPhoneNumber(phoneNumber)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        if (!event.getCreateur().getId().equals(user.getId())) {
+        if (!event.getCreateur().getId().equals(userId)) {
             throw new RuntimeException("Vous n'êtes pas autorisé à modifier cet événement");
         }
 
@@ -99,21 +146,20 @@ public class EventService {
 
         // Modifier la photo si présente
         if (eventDto.getPhoto() != null) {
-            event.setPhoto(eventDto.getPhoto());
+            event.setPhotoPath(mediaBlobStore.store(eventDto.getPhoto()));
+            imageDerivativeService.genererDerivesAsync(mediaBlobStore.resolvePath(event.getPhotoPath()));
+            event.setPhoto(null);
         }
 
         return eventRepository.save(event);
     }
 
     @Transactional
-    public void supprimerEvent(Long id, String phoneNumber) {
+    public void supprimerEvent(Long id, Long userId) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Événement non trouvé"));
 
-        User user = userRepository.findByPhoneNumber(phoneNumber)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        if (!event.getCreateur().getId().equals(user.getId())) {
+        if (!event.getCreateur().getId().equals(userId)) {
             throw new RuntimeException("Vous n'êtes pas autorisé à supprimer cet événement");
         }
 
@@ -122,7 +168,7 @@ public class EventService {
 
     @Transactional(readOnly = true)
     public List<Event> getAllEvents() {
-        return eventRepository.findAll();
+        return avecPhotos(eventRepository.findAll());
     }
 
     // DTO intégré dans le service comme pour OffreService
@@ -0,0 +1,325 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Génération des versions réduites des images (photos, miniatures de cours, photos d'événement).
+ * Chaque taille est écrite à côté de l'original sous le nom &lt;fichier&gt;.&lt;taille&gt;.jpg
+ * (ou .png pour les images avec transparence), sur un pool de threads borné
+ * pour ne pas ralentir les uploads.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ImageDerivativeService {
+
+    // Tailles disponibles : plus grand côté en pixels
+    public static final Map<String, Integer> SIZES;
+
+    static {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        sizes.put("small", 160);
+        sizes.put("medium", 480);
+        sizes.put("large", 1080);
+        SIZES = Collections.unmodifiableMap(sizes);
+    }
+
+    private static final int LARGEST_SIZE = 1080;
+
+    @Value("${image.derivatives.threads:2}")
+    private int threads;
+
+    @Value("${image.derivatives.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${image.derivatives.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    // Au-delà, l'image n'est pas décodée (protection mémoire)
+    @Value("${image.derivatives.max-pixels:50000000}")
+    private long maxPixels;
+
+    private final MediaCache mediaCache;
+
+    private ThreadPoolExecutor executor;
+
+    // Originaux en cours de traitement, pour ne pas générer deux fois les mêmes fichiers
+    private final Set<Path> enCours = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivative-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Lancer la génération des versions réduites en arrière-plan
+     */
+    public void genererDerivesAsync(Path original) {
+        if (original == null || !enCours.add(original)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    genererDerives(original);
+                } finally {
+                    enCours.remove(original);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            enCours.remove(original);
+            log.warn("File de génération d'images pleine, dérivés de {} générés à la prochaine demande", original);
+        }
+    }
+
+    /**
+     * Générer les tailles manquantes d'une image. L'original n'est décodé qu'une fois,
+     * puis chaque taille est calculée à partir de la précédente
+     */
+    public void genererDerives(Path original) {
+        try {
+            if (!Files.exists(original) || SIZES.keySet().stream().allMatch(size -> Files.exists(derivativePath(original, size)))) {
+                return;
+            }
+            BufferedImage image = lire(original);
+            if (image == null) {
+                log.debug("Format d'image non supporté, pas de dérivés pour {}", original);
+                return;
+            }
+
+            boolean png = isPngRendition(original);
+            String[] sizes = SIZES.keySet().toArray(new String[0]);
+            for (int i = sizes.length - 1; i >= 0; i--) {
+                image = redimensionner(image, SIZES.get(sizes[i]), png);
+                Path target = derivativePath(original, sizes[i]);
+                if (!Files.exists(target)) {
+                    ecrire(image, original, target, png);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Échec de génération des dérivés de {}: {}", original, e.getMessage());
+        }
+    }
+
+    /**
+     * Fichier à servir pour la taille demandée : la version réduite si elle existe,
+     * sinon l'original (la version réduite est alors préparée pour les prochaines requêtes)
+     */
+    public Path resolve(Path original, String size) {
+        if (size == null || size.isEmpty() || "original".equals(size)) {
+            return original;
+        }
+        if (!SIZES.containsKey(size)) {
+            throw new IllegalArgumentException("Taille inconnue : " + size + " (valeurs possibles : " + SIZES.keySet() + ")");
+        }
+        Path derivative = derivativePath(original, size);
+        if (Files.exists(derivative)) {
+            return derivative;
+        }
+        genererDerivesAsync(original);
+        return original;
+    }
+
+    /**
+     * Supprimer les versions réduites d'une image
+     */
+    public void supprimerDerives(Path original) {
+        for (String size : SIZES.keySet()) {
+            try {
+                Path derivative = derivativePath(original, size);
+                Files.deleteIfExists(derivative);
+                mediaCache.invalidate(derivative);
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer le dérivé {} de {}: {}", size, original, e.getMessage());
+            }
+        }
+    }
+
+    public Path derivativePath(Path original, String size) {
+        return original.resolveSibling(original.getFileName() + "." + size + (isPngRendition(original) ? ".png" : ".jpg"));
+    }
+
+    /**
+     * Image lue avec son type de contenu (les dérivés peuvent être en JPEG ou en PNG)
+     */
+    public record Image(Resource content, MediaType mediaType) {
+    }
+
+    /**
+     * Type de contenu d'une image d'après son extension
+     */
+    public static MediaType mediaTypeOf(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".png")) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (name.endsWith(".gif")) {
+            return MediaType.IMAGE_GIF;
+        }
+        if (name.endsWith(".webp")) {
+            return MediaType.parseMediaType("image/webp");
+        }
+        return MediaType.IMAGE_JPEG;
+    }
+
+    // Les PNG et GIF peuvent avoir de la transparence : leurs dérivés restent en PNG
+    private boolean isPngRendition(Path original) {
+        String name = original.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".png") || name.endsWith(".gif");
+    }
+
+    /**
+     * Décoder l'image en sous-échantillonnant dès la lecture :
+     * inutile de décoder plus de deux fois la plus grande taille produite
+     */
+    private BufferedImage lire(Path original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("Image trop grande ({}x{}), pas de dérivés pour {}", width, height, original);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, Math.max(width, height) / (LARGEST_SIZE * 2));
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Réduire l'image par paliers de moitié jusqu'à la taille cible (meilleur rendu
+     * qu'un seul redimensionnement bilinéaire). Une image déjà plus petite garde sa taille
+     */
+    private BufferedImage redimensionner(BufferedImage source, int maxSide, boolean alpha) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, (double) maxSide / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        if (source.getType() == type && width == targetWidth && height == targetHeight) {
+            return source;
+        }
+
+        BufferedImage current = source;
+        int currentWidth = width;
+        int currentHeight = height;
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (!alpha) {
+                    // Le JPEG n'a pas de transparence : fond blanc
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    /**
+     * Écrire une version réduite via un fichier temporaire. Si le résultat est plus lourd
+     * que l'original dans le même format, l'original est gardé tel quel
+     */
+    private void ecrire(BufferedImage image, Path original, Path target, boolean png) throws IOException {
+        Path tempFile = Files.createTempFile(target.getParent(), ".derive-", ".tmp");
+        try {
+            if (png) {
+                ImageIO.write(image, "png", tempFile.toFile());
+            } else {
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                try (ImageOutputStream out = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                    writer.setOutput(out);
+                    writer.write(null, new IIOImage(image, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+            }
+
+            String originalName = original.getFileName().toString().toLowerCase(Locale.ROOT);
+            boolean sameFormat = png ? originalName.endsWith(".png")
+                    : originalName.endsWith(".jpg") || originalName.endsWith(".jpeg");
+            if (sameFormat && Files.size(tempFile) >= Files.size(original)) {
+                Files.copy(original, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codes gardés en mémoire, par instance (otp.store=memory) : un code n'est vérifiable que sur
+ * le nœud qui l'a émis, à réserver à une instance unique ou au développement.
+ * Chaque clé est modifiée atomiquement (compute) sans verrou global
+ */
+@Service
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory")
+public class InMemoryOtpStore implements OtpStore {
+
+    @Value("${otp.memory.max-entries:100000}")
+    private int maxEntries;
+
+    private record Entry(Otp otp, long expiresAt, int attempts) {
+    }
+
+    private final Map<String, Entry> codes = new ConcurrentHashMap<>();
+
+    @Override
+    public void enregistrer(String key, Otp otp, Duration ttl) {
+        if (codes.size() >= maxEntries && purgerExpires() == 0 && !codes.containsKey(key)) {
+            throw new IllegalStateException("Trop de codes en attente, réessayez plus tard");
+        }
+        codes.put(key, new Entry(otp, System.nanoTime() + ttl.toNanos(), 0));
+    }
+
+    @Override
+    public Optional<Otp> tenter(String key, int maxAttempts) {
+        Otp[] resultat = new Otp[1];
+        codes.computeIfPresent(key, (k, entry) -> {
+            if (expire(entry)) {
+                return null;
+            }
+            // Code bloqué : gardé jusqu'à expiration pour qu'un nouvel essai ne le débloque pas
+            if (entry.attempts() >= maxAttempts) {
+                return entry;
+            }
+            resultat[0] = entry.otp();
+            return new Entry(entry.otp(), entry.expiresAt(), entry.attempts() + 1);
+        });
+        return Optional.ofNullable(resultat[0]);
+    }
+
+    @Override
+    public boolean consommer(String key, String codeHash) {
+        boolean[] consomme = new boolean[1];
+        codes.computeIfPresent(key, (k, entry) -> {
+            if (!entry.otp().codeHash().equals(codeHash)) {
+                return entry;
+            }
+            consomme[0] = true;
+            return null;
+        });
+        return consomme[0];
+    }
+
+    @Override
+    public int purgerExpires() {
+        int avant = codes.size();
+        codes.values().removeIf(this::expire);
+        return Math.max(0, avant - codes.size());
+    }
+
+    private boolean expire(Entry entry) {
+        return System.nanoTime() - entry.expiresAt() > 0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Insertion en masse pour les tables qui ne font qu'ajouter des lignes.
+ * Les entités en GenerationType.IDENTITY empêchent Hibernate de regrouper les INSERT :
+ * ici les lignes sont envoyées par lots, chaque lot étant un seul INSERT multi-lignes
+ * (INSERT INTO t (a, b) VALUES (?, ?), (?, ?), ...), indépendamment des options du pilote.
+ */
+@Service
+@RequiredArgsConstructor
+public class JdbcBatchWriter {
+
+    // MySQL limite le nombre de paramètres d'une requête préparée à 65535
+    private static final int MAX_PARAMETERS = 65535;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${jdbc.batch-writer.batch-size:500}")
+    private int batchSize;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Insérer les lignes par lots de batchSize. Retourne le nombre de lignes insérées.
+     * Les lignes sont consommées au fil de l'eau : seul le lot en cours est en mémoire
+     */
+    public <T> int inserer(String table, List<String> columns, Iterable<T> rows, Function<T, Object[]> values) {
+        return inserer(table, columns, rows, values, batchSize);
+    }
+
+    public <T> int inserer(String table, List<String> columns, Iterable<T> rows, Function<T, Object[]> values,
+                           int rowsPerBatch) {
+        int lot = Math.max(1, Math.min(rowsPerBatch, MAX_PARAMETERS / columns.size()));
+        String prefix = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ";
+        String tuple = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        String fullBatchSql = null;
+
+        int inserted = 0;
+        List<Object> parameters = new ArrayList<>(lot * columns.size());
+        int pending = 0;
+        Iterator<T> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            Object[] rowValues = values.apply(iterator.next());
+            if (rowValues.length != columns.size()) {
+                throw new IllegalArgumentException("Ligne de " + rowValues.length + " valeurs pour "
+                        + columns.size() + " colonnes");
+            }
+            Collections.addAll(parameters, rowValues);
+            pending++;
+            if (pending == lot) {
+                if (fullBatchSql == null) {
+                    fullBatchSql = prefix + String.join(", ", Collections.nCopies(lot, tuple));
+                }
+                inserted += jdbcTemplate.update(fullBatchSql, parameters.toArray());
+                parameters.clear();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            inserted += jdbcTemplate.update(prefix + String.join(", ", Collections.nCopies(pending, tuple)),
+                    parameters.toArray());
+        }
+        return inserted;
+    }
+
+    /**
+     * Insérer directement depuis une autre table (INSERT ... SELECT) : aucune ligne ne transite
+     * par l'application
+     */
+    public int insererDepuisSelect(String table, List<String> columns, String select, Object... parameters) {
+        return jdbcTemplate.update("INSERT INTO " + table + " (" + String.join(", ", columns) + ") " + select,
+                parameters);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.JobLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Coordination des jobs planifiés entre plusieurs instances par des baux en base (table job_lease).
+ * Chaque instance déclenche ses @Scheduled, mais seule celle qui obtient le bail exécute le job.
+ * Un job long renouvelle son bail dans la transaction de chaque lot avec {@link #exiger} :
+ * si le bail a été perdu (pause GC, coupure réseau...), le lot échoue et est annulé
+ * au lieu d'écrire en même temps que le nouveau détenteur.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class JobLeaseService {
+
+    private final JobLeaseRepository jobLeaseRepository;
+
+    // Identifiant de cette instance : nom d'hôte + suffixe aléatoire (plusieurs JVM par hôte)
+    private final String owner = hostname() + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    public record Lease(String jobName, String owner, long fencingToken, Duration ttl) {
+    }
+
+    @FunctionalInterface
+    public interface PartitionTask {
+        void executer(Lease lease, int partition, int partitions);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Prendre le bail du job s'il est libre ou expiré
+     */
+    public Optional<Lease> acquerir(String jobName, Duration ttl) {
+        jobLeaseRepository.creerSiAbsent(jobName);
+        if (jobLeaseRepository.acquerir(jobName, owner, ttl.toMillis()) == 0) {
+            return Optional.empty();
+        }
+        return jobLeaseRepository.findFencingToken(jobName, owner)
+                .map(token -> new Lease(jobName, owner, token, ttl));
+    }
+
+    /**
+     * Prolonger le bail ; false s'il a expiré ou a été repris par une autre instance
+     */
+    public boolean renouveler(Lease lease) {
+        return jobLeaseRepository.renouveler(lease.jobName(), lease.owner(), lease.fencingToken(),
+                lease.ttl().toMillis()) == 1;
+    }
+
+    /**
+     * À appeler dans la transaction d'un lot : prolonge le bail et verrouille sa ligne jusqu'au commit,
+     * IllegalStateException si le bail n'est plus détenu avec ce jeton
+     */
+    public void exiger(Lease lease) {
+        if (!renouveler(lease)) {
+            throw new IllegalStateException("Bail perdu pour le job " + lease.jobName()
+                    + " (jeton " + lease.fencingToken() + ")");
+        }
+    }
+
+    public void liberer(Lease lease) {
+        jobLeaseRepository.liberer(lease.jobName(), lease.owner(), lease.fencingToken());
+    }
+
+    /**
+     * Exécuter la tâche seulement si le bail est obtenu, puis le libérer.
+     * Retourne false si une autre instance détient le bail
+     */
+    public boolean executer(String jobName, Duration ttl, Consumer<Lease> tache) {
+        Optional<Lease> lease = acquerir(jobName, ttl);
+        if (lease.isEmpty()) {
+            log.debug("Job {} déjà pris par une autre instance", jobName);
+            return false;
+        }
+        try {
+            tache.accept(lease.get());
+        } finally {
+            try {
+                liberer(lease.get());
+            } catch (RuntimeException e) {
+                // Le bail expirera de lui-même
+                log.warn("Impossible de libérer le bail du job {}: {}", jobName, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Découper un job en partitions, chacune avec son propre bail : les instances se
+     * répartissent les partitions libres. Chaque instance essaie toutes les partitions en
+     * partant d'une position aléatoire, le job est donc terminé même s'il ne reste qu'une instance.
+     * Retourne le nombre de partitions traitées ici
+     */
+    public int executerParPartitions(String jobName, int partitions, Duration ttl, PartitionTask tache) {
+        if (partitions <= 1) {
+            return executer(jobName, ttl, lease -> tache.executer(lease, 0, 1)) ? 1 : 0;
+        }
+        int depart = ThreadLocalRandom.current().nextInt(partitions);
+        int traitees = 0;
+        for (int i = 0; i < partitions; i++) {
+            int partition = (depart + i) % partitions;
+            String nom = jobName + "#" + partition + "/" + partitions;
+            try {
+                if (executer(nom, ttl, lease -> tache.executer(lease, partition, partitions))) {
+                    traitees++;
+                }
+            } catch (RuntimeException e) {
+                // Une partition en échec n'empêche pas de traiter les suivantes
+                log.error("Échec de la partition {} du job {}: {}", partition, jobName, e.getMessage(), e);
+            }
+        }
+        return traitees;
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
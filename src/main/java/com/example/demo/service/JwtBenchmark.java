@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Role;
+import com.example.demo.model.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Mesure au démarrage du débit des jetons (opérations par seconde) : signature, vérification
+ * complète (HMAC + JSON, jetons tous différents) et vérification servie par le cache.
+ * Activé uniquement avec jwt.benchmark.enabled=true
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "jwt.benchmark.enabled", havingValue = "true")
+public class JwtBenchmark implements ApplicationRunner {
+
+    private final JwtTokenService jwtTokenService;
+
+    @Value("${jwt.benchmark.iterations:100000}")
+    private int iterations;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        User user = new User();
+        user.setId(1L);
+        user.setPhoneNumber("+21600000000");
+        user.setRole(Role.GYMZER);
+
+        // Chauffe du JIT
+        for (int i = 0; i < Math.min(iterations, 10_000); i++) {
+            jwtTokenService.validateToken(jwtTokenService.generateToken(user));
+        }
+
+        String[] tokens = new String[iterations];
+        mesurer("signature", () -> {
+            for (int i = 0; i < iterations; i++) {
+                user.setId((long) i);
+                tokens[i] = jwtTokenService.generateToken(user);
+            }
+            return iterations;
+        });
+        // Jetons tous différents : aucun n'est encore dans le cache
+        mesurer("vérification complète", () -> {
+            int valides = 0;
+            for (String token : tokens) {
+                valides += jwtTokenService.validateToken(token) ? 1 : 0;
+            }
+            return valides;
+        });
+        String token = tokens[0];
+        mesurer("vérification en cache", () -> {
+            int valides = 0;
+            for (int i = 0; i < iterations; i++) {
+                valides += jwtTokenService.verifier(token).isPresent() ? 1 : 0;
+            }
+            return valides;
+        });
+    }
+
+    private void mesurer(String operation, IntSupplier boucle) {
+        long start = System.nanoTime();
+        int count = boucle.getAsInt();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        log.info("Benchmark JWT - {} : {} opérations en {} ms ({} op/s)",
+                operation, count, Math.round(seconds * 1000), count == 0 ? 0 : Math.round(count / seconds));
+    }
+}
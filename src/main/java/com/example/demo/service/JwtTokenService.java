@@ -2,17 +2,29 @@ package com.example.demo.service;
 
 import com.example.demo.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Génération et vérification des jetons JWT. La clé HMAC et le parseur sont construits une seule fois ;
+ * les jetons déjà vérifiés sont gardés quelques minutes avec leurs claims, ce qui évite de refaire
+ * le calcul HMAC et le décodage JSON à chaque appel d'une même session
+ */
 @Service
 public class JwtTokenService {
 
@@ -22,6 +34,27 @@ public class JwtTokenService {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    // Durée maximale de conservation d'un jeton vérifié (jamais au-delà de son expiration)
+    @Value("${jwt.verified-cache.ttl-seconds:300}")
+    private long verifiedCacheTtlSeconds;
+
+    @Value("${jwt.verified-cache.max-entries:10000}")
+    private int verifiedCacheMaxEntries;
+
+    private Key key;
+    private JwtParser parser;
+
+    private record VerifiedToken(Claims claims, long expiresAtNanos) {
+    }
+
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder().setSigningKey(key).build();
+    }
+
     public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", user.getId());
@@ -32,32 +65,82 @@ public class JwtTokenService {
                 .setClaims(claims)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(generateKey(), SignatureAlgorithm.HS256)
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key generateKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
-    }
+    /**
+     * Claims du jeton s'il est valide (signature et expiration), vide sinon
+     */
+    public Optional<Claims> verifier(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        long now = System.nanoTime();
+        VerifiedToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (now - cached.expiresAtNanos() < 0) {
+                return Optional.of(cached.claims());
+            }
+            verifiedTokens.remove(token, cached);
+        }
 
-    public boolean validateToken(String token) {
+        Claims claims;
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(generateKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            return false;
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
         }
+
+        long ttlNanos = TimeUnit.SECONDS.toNanos(verifiedCacheTtlSeconds);
+        if (claims.getExpiration() != null) {
+            long restantMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+            ttlNanos = Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(restantMillis));
+        }
+        if (ttlNanos > 0) {
+            if (verifiedTokens.size() >= verifiedCacheMaxEntries) {
+                purger(now);
+            }
+            verifiedTokens.put(token, new VerifiedToken(claims, now + ttlNanos));
+        }
+        return Optional.of(claims);
     }
+
+    public boolean validateToken(String token) {
+        return verifier(token).isPresent();
+    }
+
     public String extractPhoneNumber(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(generateKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return (String) parseClaims(token).get("phoneNumber");
+    }
+
+    public Long extractUserId(String token) {
+        return userId(parseClaims(token));
+    }
+
+    public String extractRole(String token) {
+        return role(parseClaims(token));
+    }
 
-        return (String) claims.get("phoneNumber");
+    public static Long userId(Claims claims) {
+        Object userId = claims.get("userId");
+        return userId instanceof Number number ? number.longValue() : null;
+    }
+
+    public static String role(Claims claims) {
+        Object role = claims.get("role");
+        return role != null ? role.toString() : null;
+    }
+
+    private Claims parseClaims(String token) {
+        return verifier(token).orElseThrow(() -> new JwtException("Jeton invalide ou expiré"));
+    }
+
+    // Cache plein : on retire les entrées expirées, ou tout si cela ne suffit pas
+    private void purger(long now) {
+        verifiedTokens.values().removeIf(entry -> now - entry.expiresAtNanos() >= 0);
+        if (verifiedTokens.size() >= verifiedCacheMaxEntries) {
+            verifiedTokens.clear();
+        }
     }
-}
\ No newline at end of file
+}
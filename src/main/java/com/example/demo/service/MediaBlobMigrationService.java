@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.model.MediaMigrationCheckpoint;
+import com.example.demo.repository.MediaMigrationCheckpointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Migration en arrière-plan des colonnes LONGBLOB vers le stockage média sur disque.
+ * Chaque passage traite un lot par colonne, paginé par clé (id croissant), et enregistre
+ * un point de reprise : un redémarrage reprend là où la migration s'était arrêtée.
+ * Une ligne n'est modifiée que si son BLOB n'a pas changé entre la lecture et l'écriture.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MediaBlobMigrationService {
+
+    private static final List<BlobSource> SOURCES = List.of(
+            new BlobSource("user.photo", "`user`", "photo", "photo_path"),
+            new BlobSource("event.photo", "event", "photo", "photo_path"),
+            new BlobSource("commentaire.image_avant", "commentaire", "image_avant", "image_avant_path"),
+            new BlobSource("commentaire.image_apres", "commentaire", "image_apres", "image_apres_path")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MediaBlobStore mediaBlobStore;
+    private final MediaMigrationCheckpointRepository checkpointRepository;
+
+    @Value("${media.migration.enabled:false}")
+    private boolean enabled;
+
+    // Nombre de lignes lues par lot : les BLOB pèsent plusieurs Mo, on garde des lots courts
+    @Value("${media.migration.batch-size:50}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Métriques de débit depuis le démarrage de l'application
+    private final AtomicLong processedRows = new AtomicLong();
+    private final AtomicLong processedBytes = new AtomicLong();
+    private final AtomicLong processingNanos = new AtomicLong();
+
+    private record BlobSource(String name, String table, String blobColumn, String pathColumn) {
+    }
+
+    private record BlobRow(long id, byte[] data) {
+    }
+
+    /**
+     * Passage planifié, actif uniquement si media.migration.enabled=true
+     */
+    @Scheduled(fixedDelayString = "${media.migration.interval-ms:5000}")
+    public void migrerLotPlanifie() {
+        if (enabled) {
+            migrerLot();
+        }
+    }
+
+    /**
+     * Migrer un lot pour chaque colonne non terminée
+     * @return nombre de lignes migrées
+     */
+    public int migrerLot() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            for (BlobSource source : SOURCES) {
+                total += migrerLot(source);
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int migrerLot(BlobSource source) {
+        MediaMigrationCheckpoint checkpoint = checkpointRepository.findById(source.name())
+                .orElseGet(() -> new MediaMigrationCheckpoint(source.name()));
+        if (checkpoint.isCompleted()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        List<BlobRow> rows = jdbcTemplate.query(
+                "SELECT id, " + source.blobColumn() + " FROM " + source.table() +
+                        " WHERE id > ? AND " + source.blobColumn() + " IS NOT NULL ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new BlobRow(rs.getLong(1), rs.getBytes(2)),
+                checkpoint.getLastId(), batchSize);
+
+        if (rows.isEmpty()) {
+            checkpoint.setCompleted(true);
+            checkpointRepository.save(checkpoint);
+            log.info("Migration {} terminée : {} lignes, {} octets, {} échecs",
+                    source.name(), checkpoint.getMigratedRows(), checkpoint.getMigratedBytes(), checkpoint.getFailedRows());
+            return 0;
+        }
+
+        int migrated = 0;
+        long bytes = 0;
+        for (BlobRow row : rows) {
+            try {
+                String sha256 = MediaBlobStore.sha256Hex(row.data());
+                String fileName = mediaBlobStore.store(row.data(), sha256);
+
+                // Ne vider le BLOB que s'il n'a pas été modifié entre-temps
+                int updated = jdbcTemplate.update(
+                        "UPDATE " + source.table() + " SET " + source.pathColumn() + " = ?, " +
+                                source.blobColumn() + " = NULL WHERE id = ? AND " +
+                                source.blobColumn() + " IS NOT NULL AND SHA2(" + source.blobColumn() + ", 256) = ?",
+                        fileName, row.id(), sha256);
+                if (updated == 1) {
+                    migrated++;
+                    bytes += row.data().length;
+                } else {
+                    log.debug("Ligne {} de {} modifiée pendant la migration, ignorée", row.id(), source.name());
+                }
+            } catch (RuntimeException e) {
+                checkpoint.setFailedRows(checkpoint.getFailedRows() + 1);
+                log.error("Échec de migration de la ligne {} de {}: {}", row.id(), source.name(), e.getMessage());
+            }
+        }
+
+        checkpoint.setLastId(rows.get(rows.size() - 1).id());
+        checkpoint.setMigratedRows(checkpoint.getMigratedRows() + migrated);
+        checkpoint.setMigratedBytes(checkpoint.getMigratedBytes() + bytes);
+        checkpointRepository.save(checkpoint);
+
+        processedRows.addAndGet(migrated);
+        processedBytes.addAndGet(bytes);
+        processingNanos.addAndGet(System.nanoTime() - start);
+
+        log.info("Migration {} : {} lignes ({} octets) jusqu'à l'ID {}",
+                source.name(), migrated, bytes, checkpoint.getLastId());
+        return migrated;
+    }
+
+    /**
+     * Relancer une colonne depuis le début (ex: après correction d'échecs)
+     */
+    public void reprendreDepuisLeDebut(String sourceName) {
+        if (SOURCES.stream().noneMatch(s -> s.name().equals(sourceName))) {
+            throw new NoSuchElementException("Source de migration inconnue : " + sourceName);
+        }
+        MediaMigrationCheckpoint checkpoint = checkpointRepository.findById(sourceName)
+                .orElseGet(() -> new MediaMigrationCheckpoint(sourceName));
+        checkpoint.setLastId(0L);
+        checkpoint.setFailedRows(0L);
+        checkpoint.setCompleted(false);
+        checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Progression par colonne et débit global
+     */
+    public Map<String, Object> getStatus() {
+        List<Map<String, Object>> sources = new ArrayList<>();
+        for (BlobSource source : SOURCES) {
+            MediaMigrationCheckpoint checkpoint = checkpointRepository.findById(source.name())
+                    .orElseGet(() -> new MediaMigrationCheckpoint(source.name()));
+            Long remaining = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM " + source.table() + " WHERE " + source.blobColumn() + " IS NOT NULL",
+                    Long.class);
+
+            Map<String, Object> sourceStatus = new LinkedHashMap<>();
+            sourceStatus.put("source", source.name());
+            sourceStatus.put("lastId", checkpoint.getLastId());
+            sourceStatus.put("migratedRows", checkpoint.getMigratedRows());
+            sourceStatus.put("migratedBytes", checkpoint.getMigratedBytes());
+            sourceStatus.put("failedRows", checkpoint.getFailedRows());
+            sourceStatus.put("remainingRows", remaining);
+            sourceStatus.put("completed", checkpoint.isCompleted());
+            sourceStatus.put("updatedAt", checkpoint.getUpdatedAt());
+            sources.add(sourceStatus);
+        }
+
+        double seconds = processingNanos.get() / 1_000_000_000.0;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", running.get());
+        status.put("batchSize", batchSize);
+        status.put("rowsPerSecond", seconds > 0 ? processedRows.get() / seconds : 0);
+        status.put("bytesPerSecond", seconds > 0 ? processedBytes.get() / seconds : 0);
+        status.put("sources", sources);
+        return status;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Stockage sur disque des images autrefois conservées en LONGBLOB (photo utilisateur,
+ * photo d'événement, images avant/après des commentaires).
+ * Les fichiers sont écrits dans le même répertoire que les miniatures de cours
+ * et nommés par leur empreinte SHA-256 : la base ne garde que le nom du fichier.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MediaBlobStore {
+
+    private final MediaCache mediaCache;
+
+    @Value("${upload.path.thumbnail}")
+    private String thumbnailUploadPath;
+
+    // Tant que la migration n'est pas terminée, on relit aussi l'ancienne colonne BLOB
+    @Value("${media.migration.dual-read:true}")
+    private boolean dualRead;
+
+    /**
+     * Enregistrer des octets et retourner le nom de fichier à stocker en base
+     */
+    public String store(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        return store(data, sha256Hex(data));
+    }
+
+    /**
+     * Enregistrer des octets dont l'empreinte SHA-256 est déjà connue
+     */
+    public String store(byte[] data, String sha256Hex) {
+        String fileName = sha256Hex + detectExtension(data);
+        try {
+            Path uploadDir = Paths.get(thumbnailUploadPath);
+            Files.createDirectories(uploadDir);
+
+            Path target = uploadDir.resolve(fileName);
+            if (Files.exists(target)) {
+                // Contenu identique déjà présent : rien à écrire
+                return fileName;
+            }
+
+            Path tempFile = Files.createTempFile(uploadDir, ".blob-", ".tmp");
+            try {
+                Files.write(tempFile, data);
+                moveIntoPlace(tempFile, target);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            return fileName;
+        } catch (IOException e) {
+            log.error("Impossible d'écrire l'image {}: {}", fileName, e.getMessage(), e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lire une image à partir de son nom de fichier, ou null si elle n'existe pas
+     */
+    public byte[] read(String fileName) {
+        Path fullPath = resolvePath(fileName);
+        if (fullPath == null) {
+            return null;
+        }
+        try {
+            // Avatars et photos sont relus très souvent : passage par le cache hors tas
+            return mediaCache.read(fullPath);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.error("Impossible de lire l'image {}: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ouvrir une image pour une réponse HTTP, sans copie si elle est en cache, ou null si elle n'existe pas
+     */
+    public Resource open(String fileName) {
+        Path fullPath = resolvePath(fileName);
+        if (fullPath == null) {
+            return null;
+        }
+        try {
+            return mediaCache.open(fullPath);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.error("Impossible de lire l'image {}: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lecture double : le fichier s'il existe, sinon l'ancienne colonne BLOB
+     */
+    public byte[] resolve(byte[] legacyBlob, String fileName) {
+        if (fileName != null && !fileName.isEmpty()) {
+            byte[] data = read(fileName);
+            if (data != null) {
+                return data;
+            }
+        }
+        return dualRead ? legacyBlob : null;
+    }
+
+    /**
+     * Indique si une image est disponible, sans la lire
+     */
+    public boolean exists(byte[] legacyBlob, String fileName) {
+        return (fileName != null && !fileName.isEmpty())
+                || (dualRead && legacyBlob != null && legacyBlob.length > 0);
+    }
+
+    public boolean isDualRead() {
+        return dualRead;
+    }
+
+    /**
+     * Chemin complet d'une image stockée
+     */
+    public Path resolvePath(String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return null;
+        }
+        return Paths.get(thumbnailUploadPath, fileName);
+    }
+
+    public static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    /**
+     * Déterminer l'extension à partir des premiers octets de l'image
+     */
+    static String detectExtension(byte[] data) {
+        if (data.length >= 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8 && (data[2] & 0xFF) == 0xFF) {
+            return ".jpg";
+        }
+        if (data.length >= 8 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            return ".png";
+        }
+        if (data.length >= 6 && data[0] == 'G' && data[1] == 'I' && data[2] == 'F') {
+            return ".gif";
+        }
+        if (data.length >= 12 && data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F'
+                && data[8] == 'W' && data[9] == 'E' && data[10] == 'B' && data[11] == 'P') {
+            return ".webp";
+        }
+        return ".bin";
+    }
+
+    private void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Écrit en parallèle par un autre thread avec le même contenu
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
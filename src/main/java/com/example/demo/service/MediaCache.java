@@ -0,0 +1,235 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU des petits fichiers médias très demandés (miniatures, avatars, versions réduites).
+ * Le contenu est gardé hors du tas Java dans des ByteBuffer directs pour ne pas charger le GC ;
+ * la taille totale est bornée en octets et les entrées les moins récemment lues sont évincées.
+ * Les fichiers sont nommés de façon unique (UUID ou SHA-256) et ne sont jamais réécrits :
+ * la clé est le chemin du fichier et il suffit d'invalider lors d'un remplacement ou d'une suppression.
+ */
+@Service
+@Slf4j
+public class MediaCache {
+
+    @Value("${media.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Les fichiers plus gros (originaux, vidéos) sont lus directement sans passer par le cache
+    @Value("${media.cache.max-entry-bytes:524288}")
+    private long maxEntryBytes;
+
+    // Ordre d'accès : le premier élément est le moins récemment lu
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+
+    /**
+     * Ouvrir un fichier pour l'envoyer dans une réponse HTTP : une entrée en cache est lue
+     * directement dans le buffer hors tas, sans copie dans un tableau ; un fichier trop gros
+     * est lu en flux depuis le disque
+     */
+    public Resource open(Path path) throws IOException {
+        String key = key(path);
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = entries.get(key);
+        }
+        if (buffer != null) {
+            hits.incrementAndGet();
+            return new BufferResource(buffer, path);
+        }
+
+        long size = Files.size(path);
+        if (size > maxEntryBytes || size > maxBytes) {
+            bypassed.incrementAndGet();
+            return new PathResource(path);
+        }
+
+        misses.incrementAndGet();
+        byte[] data = Files.readAllBytes(path);
+        put(key, data);
+        return new ByteArrayResource(data);
+    }
+
+    /**
+     * Lire un fichier en tableau d'octets (contenu embarqué dans du JSON). Une entrée en cache
+     * est copiée à chaque lecture : pour une réponse HTTP, préférer {@link #open}
+     */
+    public byte[] read(Path path) throws IOException {
+        String key = key(path);
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = entries.get(key);
+        }
+        if (buffer != null) {
+            hits.incrementAndGet();
+            return toBytes(buffer);
+        }
+
+        long size = Files.size(path);
+        if (size > maxEntryBytes || size > maxBytes) {
+            bypassed.incrementAndGet();
+            return Files.readAllBytes(path);
+        }
+
+        misses.incrementAndGet();
+        byte[] data = Files.readAllBytes(path);
+        put(key, data);
+        return data;
+    }
+
+    /**
+     * Retirer un fichier du cache (remplacement ou suppression)
+     */
+    public void invalidate(Path path) {
+        String key = key(path);
+        synchronized (this) {
+            ByteBuffer removed = entries.remove(key);
+            if (removed != null) {
+                currentBytes -= removed.capacity();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Métriques du cache : taux de succès, évictions et occupation
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("usedBytes", currentBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxEntryBytes", maxEntryBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0);
+        stats.put("evictions", evictions.get());
+        stats.put("bypassed", bypassed.get());
+        return stats;
+    }
+
+    private void put(String key, byte[] data) {
+        // Copie hors tas : le tableau lu reste un objet éphémère, seul le buffer direct est conservé
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        ByteBuffer readOnly = buffer.asReadOnlyBuffer();
+
+        synchronized (this) {
+            ByteBuffer previous = entries.put(key, readOnly);
+            if (previous != null) {
+                currentBytes -= previous.capacity();
+            }
+            currentBytes += readOnly.capacity();
+
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, ByteBuffer> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                currentBytes -= eldest.getValue().capacity();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private byte[] toBytes(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        byte[] data = new byte[view.remaining()];
+        view.get(data);
+        return data;
+    }
+
+    private String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Contenu d'une entrée du cache : chaque flux lit sa propre vue (duplicate) du buffer partagé
+     */
+    private static final class BufferResource extends AbstractResource {
+        private final ByteBuffer buffer;
+        private final Path path;
+
+        private BufferResource(ByteBuffer buffer, Path path) {
+            this.buffer = buffer;
+            this.path = path;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            ByteBuffer view = buffer.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    int count = Math.min(len, view.remaining());
+                    view.get(b, off, count);
+                    return count;
+                }
+
+                @Override
+                public int available() {
+                    return view.remaining();
+                }
+            };
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public String getFilename() {
+            return path.getFileName().toString();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cache média [" + path + "]";
+        }
+    }
+}
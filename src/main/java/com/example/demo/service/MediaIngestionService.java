@@ -0,0 +1,130 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Écriture parallèle des fichiers d'un même envoi (vidéos d'exercices, miniature) avant
+ * toute écriture en base. Le pool est borné : quand il est saturé, l'étape s'exécute
+ * dans le thread de la requête, ce qui freine l'appelant au lieu d'empiler les fichiers.
+ * Si une étape échoue, les fichiers déjà écrits par les autres sont compensés.
+ */
+@Service
+@Slf4j
+public class MediaIngestionService {
+
+    @Value("${media.ingestion.threads:4}")
+    private int threads;
+
+    @Value("${media.ingestion.queue-capacity:16}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "media-ingestion-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Exécuter toutes les étapes en parallèle et retourner leurs résultats dans l'ordre.
+     * En cas d'échec, on attend la fin des autres étapes, on applique la compensation
+     * à chaque résultat obtenu puis on relance la première erreur
+     */
+    public <T> List<T> executerEtapes(List<Callable<T>> etapes, Consumer<T> compensation) throws IOException {
+        // Après un échec, les étapes pas encore démarrées sont sautées ; celles en cours se terminent
+        AtomicBoolean abandon = new AtomicBoolean();
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> etape : etapes) {
+            futures.add(executor.submit(() -> abandon.get() ? null : etape.call()));
+        }
+
+        List<T> resultats = new ArrayList<>();
+        Throwable erreur = null;
+        boolean interrompu = false;
+        for (Future<T> future : futures) {
+            // Même après une erreur, chaque étape est attendue pour pouvoir compenser ses fichiers
+            while (true) {
+                try {
+                    resultats.add(future.get());
+                } catch (ExecutionException e) {
+                    if (erreur == null) {
+                        erreur = e.getCause();
+                    }
+                    abandon.set(true);
+                } catch (InterruptedException e) {
+                    interrompu = true;
+                    if (erreur == null) {
+                        erreur = e;
+                    }
+                    abandon.set(true);
+                    continue;
+                }
+                break;
+            }
+        }
+        if (interrompu) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (erreur == null) {
+            return resultats;
+        }
+        compenser(resultats, compensation);
+        if (erreur instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (erreur instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (erreur instanceof Error error) {
+            throw error;
+        }
+        throw new IOException("Ingestion des fichiers interrompue", erreur);
+    }
+
+    /**
+     * Annuler les fichiers écrits (par exemple si l'enregistrement en base échoue ensuite)
+     */
+    public <T> void compenser(List<T> resultats, Consumer<T> compensation) {
+        for (T resultat : resultats) {
+            if (resultat == null) {
+                continue;
+            }
+            try {
+                compensation.accept(resultat);
+            } catch (RuntimeException e) {
+                log.warn("Compensation impossible pour {}: {}", resultat, e.getMessage());
+            }
+        }
+    }
+}
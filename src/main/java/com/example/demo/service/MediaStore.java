@@ -0,0 +1,241 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.MediaBlobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Stockage partagé des fichiers uploadés (vidéos d'exercice, reels, photos).
+ * Chaque contenu est haché pendant l'écriture et n'est conservé qu'une fois,
+ * sous une arborescence ab/cd/&lt;sha256&gt;.ext pour garder des répertoires de taille raisonnable.
+ * Les entités qui pointent vers un fichier sont comptées dans media_blob ; un fichier
+ * qui n'est plus référencé est supprimé par la purge planifiée après un délai de grâce.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MediaStore {
+
+    private final MediaBlobRepository mediaBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageDerivativeService imageDerivativeService;
+    private final MediaCache mediaCache;
+
+    // Délai avant suppression d'un fichier sans référence (laisse finir les lectures en cours)
+    @Value("${media.store.purge-grace-minutes:60}")
+    private long purgeGraceMinutes;
+
+    @Value("${media.store.purge-batch-size:100}")
+    private int purgeBatchSize;
+
+    /**
+     * Fichier stocké : chemin complet, chemin relatif à la racine, empreinte et taille
+     */
+    public record StoredMedia(Path path, String relativePath, String sha256, long size) {
+    }
+
+    /**
+     * Traitement appliqué au fichier complet avant son rangement (ex: réécriture faststart des MP4).
+     * Retourne true si le fichier a été modifié, pour recalculer son empreinte
+     */
+    @FunctionalInterface
+    public interface PostProcessor {
+        boolean process(Path file) throws IOException;
+    }
+
+    /**
+     * Enregistrer un fichier uploadé sous la racine donnée et prendre une référence dessus
+     */
+    public StoredMedia store(MultipartFile file, Path root, String defaultExtension) throws IOException {
+        return store(file, root, defaultExtension, null);
+    }
+
+    public StoredMedia store(MultipartFile file, Path root, String defaultExtension,
+                             PostProcessor postProcessor) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return store(in, root, extensionOf(file.getOriginalFilename(), defaultExtension), postProcessor);
+        }
+    }
+
+    /**
+     * Écrire le flux dans un fichier temporaire en calculant son SHA-256 au passage,
+     * puis le ranger à son emplacement définitif s'il n'y est pas déjà
+     */
+    public StoredMedia store(InputStream in, Path root, String extension, PostProcessor postProcessor)
+            throws IOException {
+        Files.createDirectories(root);
+        Path tempFile = Files.createTempFile(root, ".upload-", ".tmp");
+        try {
+            MessageDigest digest = newSha256();
+            long size;
+            try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+                size = Files.copy(digestIn, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            FileHash hash = new FileHash(HexFormat.of().formatHex(digest.digest()), size);
+            if (postProcessor != null && postProcessor.process(tempFile)) {
+                hash = hash(tempFile);
+            }
+            return place(tempFile, root, hash.sha256(), hash.size(), extension);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Ranger un fichier déjà écrit sur disque (upload par morceaux) sans le recopier :
+     * il est relu une fois pour calculer son empreinte puis déplacé à son emplacement définitif.
+     * Le fichier doit se trouver sur le même système de fichiers que la racine.
+     * En cas d'échec (empreinte différente, erreur d'écriture), le fichier est laissé en place
+     */
+    public StoredMedia adopt(Path file, Path root, String extension, String expectedSha256,
+                             PostProcessor postProcessor) throws IOException {
+        FileHash hash = hash(file);
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(hash.sha256())) {
+            throw new IllegalArgumentException("Empreinte SHA-256 du fichier différente de celle annoncée");
+        }
+        if (postProcessor != null && postProcessor.process(file)) {
+            hash = hash(file);
+        }
+        Files.createDirectories(root);
+        StoredMedia stored = place(file, root, hash.sha256(), hash.size(), extension);
+        // Contenu déjà présent : le fichier n'a pas été déplacé
+        Files.deleteIfExists(file);
+        return stored;
+    }
+
+    /**
+     * Libérer la référence d'une entité supprimée ou dont le fichier a été remplacé
+     */
+    public void release(Path path) {
+        if (path == null) {
+            return;
+        }
+        String storageKey = storageKey(path);
+        if (mediaBlobRepository.release(storageKey) == 0 && !mediaBlobRepository.existsById(storageKey)) {
+            // Fichier antérieur au stockage partagé (nom UUID) : personne d'autre ne le référence
+            try {
+                Files.deleteIfExists(path);
+                mediaCache.invalidate(path);
+                imageDerivativeService.supprimerDerives(path);
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer le fichier {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Supprimer les fichiers qui ne sont plus référencés depuis le délai de grâce
+     */
+    @Scheduled(fixedDelayString = "${media.store.purge-interval-ms:3600000}")
+    public void purgerFichiersNonReferences() {
+        List<String> storagePaths = mediaBlobRepository.findUnreferenced(purgeGraceMinutes, purgeBatchSize);
+        int purged = 0;
+        for (String storagePath : storagePaths) {
+            // La ligne est supprimée et le fichier effacé dans la même transaction :
+            // un upload concurrent du même contenu attend le verrou de ligne puis réécrit le fichier
+            Boolean deleted = transactionTemplate.execute(status -> {
+                if (mediaBlobRepository.deleteIfUnreferenced(storagePath) == 0) {
+                    return false;
+                }
+                try {
+                    Files.deleteIfExists(Path.of(storagePath));
+                    mediaCache.invalidate(Path.of(storagePath));
+                    imageDerivativeService.supprimerDerives(Path.of(storagePath));
+                    return true;
+                } catch (IOException e) {
+                    log.warn("Impossible de purger le fichier {}: {}", storagePath, e.getMessage());
+                    status.setRollbackOnly();
+                    return false;
+                }
+            });
+            if (Boolean.TRUE.equals(deleted)) {
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            log.info("{} fichier(s) média non référencé(s) supprimé(s)", purged);
+        }
+    }
+
+    private StoredMedia place(Path tempFile, Path root, String sha256, long size, String extension) throws IOException {
+        String relativePath = sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + extension;
+        Path target = root.resolve(relativePath);
+
+        // La référence est prise avant de regarder le disque, pour qu'une purge en cours
+        // ne puisse pas supprimer le fichier après qu'on l'a trouvé
+        mediaBlobRepository.acquire(storageKey(target), sha256, size);
+
+        if (Files.exists(target)) {
+            log.debug("Contenu déjà présent, fichier réutilisé: {}", target);
+        } else {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Même contenu écrit en parallèle par un autre upload
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return new StoredMedia(target, relativePath, sha256, size);
+    }
+
+    private record FileHash(String sha256, long size) {
+    }
+
+    private FileHash hash(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        return new FileHash(HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    private String storageKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Extension du fichier d'origine en minuscules, ou l'extension par défaut si elle est absente ou suspecte
+     */
+    static String extensionOf(String originalFilename, String defaultExtension) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return defaultExtension;
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.')).toLowerCase(Locale.ROOT);
+        return extension.matches("\\.[a-z0-9]{1,10}") ? extension : defaultExtension;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.demo.service;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming de fichiers médias (vidéos) avec support des requêtes HTTP Range.
+ * Les octets sont envoyés directement depuis le fichier (sendfile Tomcat ou FileChannel.transferTo),
+ * sans jamais charger le fichier complet en mémoire.
+ */
+@Service
+@Slf4j
+public class MediaStreamingService {
+
+    // Attributs de requête utilisés par Tomcat pour le sendfile (zéro copie)
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // En dessous de cette taille, le sendfile n'apporte rien (même seuil que le DefaultServlet de Tomcat)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * Envoyer un fichier en respectant les en-têtes Range et If-Range de la requête
+     */
+    public void stream(Path file, String contentType, String filename,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(file, contentType, filename, null, request, response);
+    }
+
+    /**
+     * Envoyer un fichier avec une politique de cache, en gérant aussi les GET conditionnels
+     * (If-None-Match / If-Modified-Since) qui renvoient 304 sans corps
+     */
+    public void stream(Path file, String contentType, String filename, CacheControl cacheControl,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = buildEtag(length, lastModified);
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        if (cacheControl != null && cacheControl.getHeaderValue() != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.inline().filename(filename).build().toString());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, etag, lastModified)) {
+            sendFull(file, contentType, length, request, response);
+            return;
+        }
+
+        List<long[]> ranges;
+        try {
+            ranges = resolveRanges(HttpRange.parseRanges(rangeHeader), length);
+        } catch (IllegalArgumentException e) {
+            log.debug("En-tête Range invalide '{}' pour {}: {}", rangeHeader, file, e.getMessage());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        }
+
+        if (ranges.size() == 1) {
+            sendSingleRange(file, contentType, length, ranges.get(0), request, response);
+        } else {
+            sendMultipleRanges(file, contentType, length, ranges, request, response);
+        }
+    }
+
+    /**
+     * Construire un ETag fort à partir de la taille et de la date de modification du fichier
+     */
+    public String buildEtag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Vérifier les en-têtes de GET conditionnel. If-None-Match est prioritaire sur If-Modified-Since
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String method = request.getMethod();
+        if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+            return false;
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Comparaison faible : W/"x" et "x" sont équivalents
+            String opaqueTag = stripWeakPrefix(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if ("*".equals(tag) || stripWeakPrefix(tag).equals(opaqueTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String stripWeakPrefix(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Vérifier la condition If-Range : si elle ne correspond plus, la plage est ignorée
+     * et le fichier complet est renvoyé
+     */
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Comparaison forte exigée par la RFC 9110 : un ETag faible ne valide jamais
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return ifRangeDate != -1 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Convertir les plages HTTP en couples [début, fin] inclusifs et les valider
+     */
+    private List<long[]> resolveRanges(List<HttpRange> httpRanges, long length) {
+        if (httpRanges.isEmpty()) {
+            throw new IllegalArgumentException("Aucune plage demandée");
+        }
+        List<long[]> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(length);
+            long end = httpRange.getRangeEnd(length);
+            if (start >= length || start > end) {
+                throw new IllegalArgumentException("Plage hors du fichier: " + httpRange);
+            }
+            total += end - start + 1;
+            ranges.add(new long[]{start, end});
+        }
+        // Refuser les requêtes qui demandent plus d'octets que le fichier n'en contient
+        if (ranges.size() > 1 && total > length) {
+            throw new IllegalArgumentException("Plages cumulées plus grandes que le fichier");
+        }
+        return ranges;
+    }
+
+    private void sendFull(Path file, String contentType, long length,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType);
+        response.setContentLengthLong(length);
+        if (isHead(request) || length == 0) {
+            return;
+        }
+        if (!trySendfile(file, 0, length, request)) {
+            transfer(file, 0, length, response.getOutputStream());
+        }
+    }
+
+    private void sendSingleRange(Path file, String contentType, long length, long[] range,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long start = range[0];
+        long end = range[1];
+        long count = end - start + 1;
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        response.setContentLengthLong(count);
+        if (isHead(request)) {
+            return;
+        }
+        if (!trySendfile(file, start, count, request)) {
+            transfer(file, start, count, response.getOutputStream());
+        }
+    }
+
+    private void sendMultipleRanges(Path file, String contentType, long length, List<long[]> ranges,
+                                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (isHead(request)) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        for (long[] range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n" +
+                    HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n" +
+                    HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            transfer(file, range[0], range[1] - range[0] + 1, out);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Déléguer l'envoi au sendfile de Tomcat quand le connecteur le supporte
+     */
+    private boolean trySendfile(Path file, long start, long count, HttpServletRequest request) {
+        if (count < SENDFILE_MIN_SIZE || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, start);
+        // Tomcat attend une position de fin exclusive
+        request.setAttribute(SENDFILE_END_ATTR, start + count);
+        return true;
+    }
+
+    /**
+     * Copier une portion du fichier vers la réponse avec FileChannel.transferTo
+     */
+    private void transfer(Path file, long start, long count, ServletOutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    private boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+}
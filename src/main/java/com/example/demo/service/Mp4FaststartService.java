@@ -0,0 +1,286 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Réécriture "faststart" des MP4 : quand l'atome moov (index de la vidéo) est placé après
+ * les données (mdat), le lecteur doit télécharger la fin du fichier avant de pouvoir démarrer.
+ * On déplace moov devant le premier mdat et on corrige les offsets des chunks (stco/co64).
+ * Seul moov est chargé en mémoire ; les données sont recopiées par FileChannel.transferTo.
+ */
+@Service
+@Slf4j
+public class Mp4FaststartService {
+
+    // Un moov plus gros est anormal : le fichier est laissé tel quel
+    @Value("${video.faststart.max-moov-bytes:67108864}")
+    private long maxMoovBytes;
+
+    private record Box(String type, long offset, long size, int headerSize) {
+        long end() {
+            return offset + size;
+        }
+    }
+
+    /**
+     * Placer moov avant mdat si nécessaire. Retourne true si le fichier a été réécrit.
+     * Un fichier qui n'est pas un MP4 exploitable est laissé intact
+     */
+    public boolean rendreProgressif(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Box> boxes = lireBoitesRacine(channel);
+            Box moov = premiere(boxes, "moov");
+            Box firstMdat = premiere(boxes, "mdat");
+            if (moov == null || firstMdat == null || moov.offset() < firstMdat.offset()) {
+                return false;
+            }
+            if (premiere(boxes, "moof") != null) {
+                // MP4 fragmenté : les offsets sont relatifs aux fragments, rien à déplacer
+                return false;
+            }
+            if (moov.size() > maxMoovBytes) {
+                log.warn("moov de {} octets trop volumineux, pas de faststart pour {}", moov.size(), file);
+                return false;
+            }
+
+            ByteBuffer moovData = ByteBuffer.allocate((int) moov.size());
+            lireCompletement(channel, moovData, moov.offset());
+            moovData.flip();
+
+            // Tout ce qui se trouvait entre le premier mdat et l'ancien moov est décalé de la taille de moov
+            if (!decalerOffsets(moovData, moov.headerSize(), (int) moov.size(),
+                    moov.size(), firstMdat.offset(), moov.offset())) {
+                log.warn("Offsets au-delà de 4 Go dans stco, pas de faststart pour {}", file);
+                return false;
+            }
+
+            Path output = Files.createTempFile(file.getParent(), ".faststart-", ".tmp");
+            try {
+                try (FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                    for (Box box : boxes) {
+                        if (box == moov) {
+                            continue;
+                        }
+                        if (box == firstMdat) {
+                            moovData.rewind();
+                            while (moovData.hasRemaining()) {
+                                out.write(moovData);
+                            }
+                        }
+                        copier(channel, box.offset(), box.size(), out);
+                    }
+                }
+                Files.move(output, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(output);
+            }
+            log.info("MP4 réécrit en faststart : {} (moov de {} octets déplacé)", file, moov.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Faststart impossible pour {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Durée réelle de la vidéo en secondes, lue dans mvhd, ou null si elle est inconnue
+     */
+    public Integer lireDureeSecondes(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Box moov = premiere(lireBoitesRacine(channel), "moov");
+            if (moov == null) {
+                return null;
+            }
+            // mvhd est un enfant direct de moov : seuls les en-têtes sont lus
+            long position = moov.offset() + moov.headerSize();
+            while (position + 8 <= moov.end()) {
+                Box box = lireBoite(channel, position, moov.end());
+                if ("mvhd".equals(box.type())) {
+                    ByteBuffer body = ByteBuffer.allocate(32);
+                    lireCompletement(channel, body, box.offset() + box.headerSize());
+                    body.flip();
+                    int version = body.get(0) & 0xFF;
+                    long timescale;
+                    long duration;
+                    if (version == 1) {
+                        timescale = body.getInt(20) & 0xFFFFFFFFL;
+                        duration = body.getLong(24);
+                    } else {
+                        timescale = body.getInt(12) & 0xFFFFFFFFL;
+                        duration = body.getInt(16) & 0xFFFFFFFFL;
+                        if (duration == 0xFFFFFFFFL) {
+                            return null;
+                        }
+                    }
+                    if (timescale == 0 || duration < 0) {
+                        return null;
+                    }
+                    return (int) Math.round((double) duration / timescale);
+                }
+                position = box.end();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Durée illisible pour {}: {}", file, e.getMessage());
+        }
+        return null;
+    }
+
+    private List<Box> lireBoitesRacine(FileChannel channel) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        long fileSize = channel.size();
+        long position = 0;
+        while (position + 8 <= fileSize) {
+            Box box = lireBoite(channel, position, fileSize);
+            boxes.add(box);
+            position = box.end();
+        }
+        return boxes;
+    }
+
+    /**
+     * Lire l'en-tête d'une boîte : taille sur 32 bits (ou 64 bits si elle vaut 1, jusqu'à la fin si 0) et type
+     */
+    private Box lireBoite(FileChannel channel, long position, long limit) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.limit(8);
+        lireCompletement(channel, header, position);
+        long size = header.getInt(0) & 0xFFFFFFFFL;
+        String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+        int headerSize = 8;
+        if (size == 1) {
+            header.limit(16);
+            lireCompletement(channel, header, position + 8);
+            size = header.getLong(8);
+            headerSize = 16;
+        } else if (size == 0) {
+            size = limit - position;
+        }
+        if (size < headerSize || position + size > limit) {
+            throw new IOException("Boîte MP4 '" + type + "' invalide à la position " + position);
+        }
+        return new Box(type, position, size, headerSize);
+    }
+
+    /**
+     * Parcourir moov en mémoire et ajouter delta aux offsets de chunks compris dans [from, to).
+     * Retourne false si un offset ne tient plus sur 32 bits dans une table stco
+     */
+    private boolean decalerOffsets(ByteBuffer moov, int start, int end, long delta, long from, long to) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = moov.getInt(position) & 0xFFFFFFFFL;
+            String type = fourcc(moov, position + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                size = moov.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                throw new IllegalArgumentException("Boîte '" + type + "' invalide dans moov");
+            }
+            int boxEnd = (int) (position + size);
+            int body = position + headerSize;
+
+            switch (type) {
+                case "trak", "mdia", "minf", "stbl" -> {
+                    if (!decalerOffsets(moov, body, boxEnd, delta, from, to)) {
+                        return false;
+                    }
+                }
+                case "stco" -> {
+                    int count = moov.getInt(body + 4);
+                    verifierTable(count, 4, body, boxEnd, type);
+                    for (int i = 0; i < count; i++) {
+                        int index = body + 8 + i * 4;
+                        long offset = moov.getInt(index) & 0xFFFFFFFFL;
+                        if (offset >= from && offset < to) {
+                            long shifted = offset + delta;
+                            if (shifted > 0xFFFFFFFFL) {
+                                return false;
+                            }
+                            moov.putInt(index, (int) shifted);
+                        }
+                    }
+                }
+                case "co64" -> {
+                    int count = moov.getInt(body + 4);
+                    verifierTable(count, 8, body, boxEnd, type);
+                    for (int i = 0; i < count; i++) {
+                        int index = body + 8 + i * 8;
+                        long offset = moov.getLong(index);
+                        if (offset >= from && offset < to) {
+                            moov.putLong(index, offset + delta);
+                        }
+                    }
+                }
+                case "cmov" -> throw new IllegalArgumentException("moov compressé non supporté");
+                default -> {
+                    // Les autres boîtes ne contiennent pas d'offsets absolus
+                }
+            }
+            position = boxEnd;
+        }
+        return true;
+    }
+
+    private void verifierTable(int count, int entrySize, int body, int boxEnd, String type) {
+        if (count < 0 || body + 8 + (long) count * entrySize > boxEnd) {
+            throw new IllegalArgumentException("Table " + type + " invalide");
+        }
+    }
+
+    private String fourcc(ByteBuffer buffer, int index) {
+        byte[] bytes = new byte[4];
+        buffer.get(index, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private Box premiere(List<Box> boxes, String type) {
+        for (Box box : boxes) {
+            if (box.type().equals(type)) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    private void lireCompletement(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Fin de fichier inattendue à la position " + current);
+            }
+            current += read;
+        }
+    }
+
+    private void copier(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        long remaining = count;
+        long current = position;
+        while (remaining > 0) {
+            long transferred = source.transferTo(current, remaining, target);
+            if (transferred <= 0) {
+                throw new EOFException("Copie interrompue à la position " + current);
+            }
+            current += transferred;
+            remaining -= transferred;
+        }
+    }
+}
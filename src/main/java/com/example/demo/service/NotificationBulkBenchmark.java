@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Notification;
+import com.example.demo.model.Role;
+import com.example.demo.model.User;
+import com.example.demo.repository.NotificationRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Mesure au démarrage du débit d'écriture des notifications (lignes par seconde) :
+ * boucle de save JPA (ancienne diffusion), INSERT multi-lignes par lots, et INSERT ... SELECT par rôle.
+ * Activé uniquement avec notification.bulk.benchmark.enabled=true ; les lignes écrites sont supprimées ensuite.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "notification.bulk.benchmark.enabled", havingValue = "true")
+public class NotificationBulkBenchmark implements ApplicationRunner {
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final NotificationBulkWriter notificationBulkWriter;
+    private final JdbcBatchWriter jdbcBatchWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${notification.bulk.benchmark.rows:5000}")
+    private int rows;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<User> users = userRepository.findAll(PageRequest.of(0, 1)).getContent();
+        if (users.isEmpty()) {
+            log.warn("Benchmark des notifications ignoré : aucun utilisateur en base");
+            return;
+        }
+        User destinataire = users.get(0);
+        String marqueur = "benchmark-" + UUID.randomUUID();
+        try {
+            mesurer("boucle save JPA", () -> transactionTemplate.execute(status -> {
+                for (int i = 0; i < rows; i++) {
+                    notificationRepository.save(nouvelle(marqueur, destinataire, i));
+                }
+                return rows;
+            }));
+            mesurer("INSERT multi-lignes (lots de " + jdbcBatchWriter.getBatchSize() + ")",
+                    () -> transactionTemplate.execute(status -> notificationBulkWriter.inserer(
+                            () -> IntStream.range(0, rows).mapToObj(i -> nouvelle(marqueur, destinataire, i)).iterator())));
+            mesurer("INSERT ... SELECT (rôle GYMZER)",
+                    () -> transactionTemplate.execute(status -> notificationBulkWriter.insererPourRole(
+                            marqueur, "Benchmark", Role.GYMZER, Notification.NotificationType.SYSTEME, null)));
+        } finally {
+            int supprimees = jdbcTemplate.update("DELETE FROM notifications WHERE titre = ?", marqueur);
+            log.info("Benchmark des notifications terminé, {} lignes de test supprimées", supprimees);
+        }
+    }
+
+    private void mesurer(String methode, IntSupplier ecriture) {
+        long start = System.nanoTime();
+        int written = ecriture.getAsInt();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        log.info("Benchmark notifications - {} : {} lignes en {} ms ({} lignes/s)",
+                methode, written, Math.round(seconds * 1000), written == 0 ? 0 : Math.round(written / seconds));
+    }
+
+    private Notification nouvelle(String marqueur, User destinataire, int index) {
+        return new Notification(marqueur, "Notification de benchmark " + index, destinataire,
+                Notification.NotificationType.SYSTEME, null);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Notification;
+import com.example.demo.model.Role;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Écriture en masse des notifications directes (une ligne par destinataire)
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationBulkWriter {
+
+    private static final String TABLE = "notifications";
+    private static final List<String> COLUMNS =
+            List.of("titre", "message", "user_id", "date_creation", "lue", "type", "reference_id");
+
+    private final JdbcBatchWriter jdbcBatchWriter;
+
+    /**
+     * Insérer des notifications déjà construites, par INSERT multi-lignes
+     */
+    public int inserer(Iterable<Notification> notifications) {
+        return jdbcBatchWriter.inserer(TABLE, COLUMNS, notifications, n -> new Object[]{
+                n.getTitre(),
+                n.getMessage(),
+                n.getDestinataire().getId(),
+                Timestamp.valueOf(n.getDateCreation()),
+                n.isLue(),
+                n.getType() != null ? n.getType().name() : null,
+                n.getReferenceId()
+        });
+    }
+
+    /**
+     * Une notification par utilisateur du rôle, générée par la base en une requête
+     */
+    public int insererPourRole(String titre, String message, Role role,
+                               Notification.NotificationType type, Long referenceId) {
+        return jdbcBatchWriter.insererDepuisSelect(TABLE, COLUMNS,
+                "SELECT ?, ?, u.id, ?, false, ?, ? FROM `user` u WHERE u.role = ?",
+                titre, message, Timestamp.valueOf(LocalDateTime.now()), type.name(), referenceId, role.name());
+    }
+}
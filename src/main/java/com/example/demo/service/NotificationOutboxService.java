@@ -0,0 +1,242 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Event;
+import com.example.demo.model.NotificationOutbox;
+import com.example.demo.model.Offre;
+import com.example.demo.model.OutboxEventType;
+import com.example.demo.model.OutboxStatus;
+import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.NotificationOutboxRepository;
+import com.example.demo.repository.OffreRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diffusion des notifications en arrière-plan (outbox transactionnelle).
+ * La création d'une offre ou d'un événement n'écrit qu'une ligne notification_outbox dans
+ * sa propre transaction ; un répartiteur planifié la traite ensuite avec une concurrence bornée.
+ * Un échec est retenté avec un délai croissant, puis la ligne passe en DEAD (lettre morte)
+ * et peut être rejouée depuis /api/admin/notification-outbox.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class NotificationOutboxService {
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final OffreRepository offreRepository;
+    private final EventRepository eventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${notification.outbox.threads:2}")
+    private int threads;
+
+    @Value("${notification.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${notification.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    // Délai avant la première nouvelle tentative, doublé à chaque échec
+    @Value("${notification.outbox.retry-base-delay-ms:5000}")
+    private long retryBaseDelayMs;
+
+    @Value("${notification.outbox.retry-max-delay-ms:3600000}")
+    private long retryMaxDelayMs;
+
+    // Une ligne en cours depuis plus longtemps est considérée abandonnée (arrêt de l'application)
+    @Value("${notification.outbox.processing-timeout-minutes:10}")
+    private long processingTimeoutMinutes;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, batchSize)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notification-outbox-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Enregistrer une notification à diffuser, dans la transaction de l'appelant :
+     * elle n'existe que si l'offre ou l'événement est bien enregistré
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publier(OutboxEventType type, Long referenceId) {
+        outboxRepository.save(new NotificationOutbox(type, referenceId));
+    }
+
+    /**
+     * Traiter les lignes prêtes. Chaque ligne est réservée avant traitement,
+     * ce qui permet de lancer plusieurs instances de l'application
+     */
+    @Scheduled(fixedDelayString = "${notification.outbox.poll-interval-ms:2000}")
+    public void distribuer() {
+        List<Long> ids = outboxRepository.findIdsPrets(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        List<Future<?>> futures = new ArrayList<>();
+        for (Long id : ids) {
+            if (outboxRepository.reserver(id) == 0) {
+                continue;
+            }
+            try {
+                futures.add(executor.submit(() -> traiter(id)));
+            } catch (RejectedExecutionException e) {
+                // Pool saturé : la ligne sera reprise par la récupération des lignes bloquées
+                log.warn("File de diffusion pleine, notification {} reportée", id);
+                break;
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Erreur inattendue du répartiteur de notifications", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Remettre en attente les lignes réservées par une instance arrêtée en cours de traitement
+     */
+    @Scheduled(fixedDelayString = "${notification.outbox.recovery-interval-ms:300000}")
+    public void recupererBloquees() {
+        int liberees = outboxRepository.libererBloquees(LocalDateTime.now().minusMinutes(processingTimeoutMinutes));
+        if (liberees > 0) {
+            log.warn("{} notification(s) bloquée(s) remise(s) en attente", liberees);
+        }
+    }
+
+    /**
+     * Rejouer une lettre morte
+     */
+    @Transactional
+    public void rejouer(Long id) {
+        NotificationOutbox entry = outboxRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Notification en attente non trouvée"));
+        if (entry.getStatus() != OutboxStatus.DEAD) {
+            throw new IllegalStateException("Seules les lettres mortes peuvent être rejouées (statut : " + entry.getStatus() + ")");
+        }
+        entry.setStatus(OutboxStatus.PENDING);
+        entry.setAttempts(0);
+        entry.setNextAttemptAt(LocalDateTime.now());
+        outboxRepository.save(entry);
+    }
+
+    public List<NotificationOutbox> getLettresMortes(int limit) {
+        return outboxRepository.findByStatusOrderByIdDesc(OutboxStatus.DEAD, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (OutboxStatus value : OutboxStatus.values()) {
+            status.put(value.name().toLowerCase(), outboxRepository.countByStatus(value));
+        }
+        return status;
+    }
+
+    /**
+     * La diffusion et le passage en DONE sont dans la même transaction :
+     * une notification n'est jamais créée deux fois pour la même ligne
+     */
+    private void traiter(Long id) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                NotificationOutbox entry = outboxRepository.findById(id)
+                        .orElseThrow(() -> new NoSuchElementException("Ligne " + id + " disparue"));
+                diffuser(entry);
+                entry.setAttempts(entry.getAttempts() + 1);
+                entry.setStatus(OutboxStatus.DONE);
+                entry.setLastError(null);
+                entry.setProcessedAt(LocalDateTime.now());
+                outboxRepository.save(entry);
+            });
+        } catch (RuntimeException e) {
+            enregistrerEchec(id, e);
+        }
+    }
+
+    private void diffuser(NotificationOutbox entry) {
+        switch (entry.getType()) {
+            case NOUVELLE_OFFRE -> {
+                Optional<Offre> offre = offreRepository.findById(entry.getReferenceId());
+                if (offre.isPresent()) {
+                    notificationService.notifierNouvelleOffre(offre.get());
+                } else {
+                    log.info("Offre {} supprimée avant diffusion, notification ignorée", entry.getReferenceId());
+                }
+            }
+            case NOUVEL_EVENEMENT -> {
+                Optional<Event> event = eventRepository.findById(entry.getReferenceId());
+                if (event.isPresent()) {
+                    notificationService.notifierNouvelEvenement(event.get());
+                } else {
+                    log.info("Événement {} supprimé avant diffusion, notification ignorée", entry.getReferenceId());
+                }
+            }
+        }
+    }
+
+    private void enregistrerEchec(Long id, RuntimeException cause) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.findById(id).ifPresent(entry -> {
+                int attempts = entry.getAttempts() + 1;
+                entry.setAttempts(attempts);
+                String message = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                entry.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+                if (attempts >= maxAttempts) {
+                    entry.setStatus(OutboxStatus.DEAD);
+                    log.error("Notification {} ({} {}) abandonnée après {} tentatives: {}",
+                            id, entry.getType(), entry.getReferenceId(), attempts, message);
+                } else {
+                    long delay = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(attempts - 1, 20));
+                    entry.setStatus(OutboxStatus.PENDING);
+                    entry.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000));
+                    log.warn("Échec de diffusion de la notification {} (tentative {}/{}), nouvel essai dans {} ms: {}",
+                            id, attempts, maxAttempts, delay, message);
+                }
+                outboxRepository.save(entry);
+            }));
+        } catch (RuntimeException e) {
+            // La ligne reste PROCESSING et sera remise en attente par recupererBloquees
+            log.error("Impossible d'enregistrer l'échec de la notification {}: {}", id, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Role;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envoi en temps réel des notifications et messages de contact par Server-Sent Events.
+ * Les abonnés sont enregistrés en mémoire, par nœud : un événement n'est poussé qu'aux
+ * connexions ouvertes sur l'instance qui l'a produit, l'interrogation des compteurs
+ * reste donc le mécanisme de rattrapage. Chaque connexion a une file bornée : un client
+ * trop lent est déconnecté (il se reconnecte et relit ses notifications) plutôt que
+ * de faire grossir la mémoire.
+ */
+@Service
+@Slf4j
+public class NotificationPushService {
+
+    @Value("${notifications.push.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${notifications.push.max-connections-per-user:5}")
+    private int maxConnectionsPerUser;
+
+    // Durée de vie d'une connexion : le navigateur (EventSource) se reconnecte automatiquement
+    @Value("${notifications.push.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${notifications.push.threads:4}")
+    private int threads;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong connectionIds = new AtomicLong();
+
+    private record PushEvent(String name, Object data) {
+    }
+
+    private final class Subscriber {
+        private final long id = connectionIds.incrementAndGet();
+        private final Long userId;
+        private final Role role;
+        private final SseEmitter emitter = new SseEmitter(timeoutMs);
+        private final BlockingQueue<PushEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(Long userId, Role role) {
+            this.userId = userId;
+            this.role = role;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notification-push-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    /**
+     * Ouvrir un flux pour l'utilisateur. Au-delà du nombre maximal de connexions,
+     * la plus ancienne est fermée
+     */
+    public SseEmitter abonner(Long userId, Role role) {
+        Subscriber subscriber = new Subscriber(userId, role);
+        subscriber.emitter.onCompletion(() -> retirer(subscriber));
+        subscriber.emitter.onTimeout(() -> retirer(subscriber));
+        subscriber.emitter.onError(error -> retirer(subscriber));
+
+        // Ajout dans compute : ne peut pas se croiser avec la suppression d'un ensemble devenu vide
+        Set<Subscriber> connexions = subscribers.compute(userId, (id, existantes) -> {
+            Set<Subscriber> ensemble = existantes != null ? existantes : ConcurrentHashMap.newKeySet();
+            ensemble.add(subscriber);
+            return ensemble;
+        });
+        while (connexions.size() > maxConnectionsPerUser) {
+            connexions.stream()
+                    .filter(s -> s != subscriber)
+                    .min((a, b) -> Long.compare(a.id, b.id))
+                    .ifPresent(this::fermer);
+        }
+
+        pousser(subscriber, new PushEvent("connected", Map.of("userId", userId)));
+        return subscriber.emitter;
+    }
+
+    /**
+     * Pousser une notification directe à un utilisateur
+     */
+    public void envoyerNotification(Long userId, Object notification) {
+        apresCommit(() -> envoyer(subscribers.get(userId), new PushEvent("notification", notification)));
+    }
+
+    /**
+     * Pousser une annonce à tous les utilisateurs connectés du rôle
+     */
+    public void envoyerAnnonce(Role audience, Object annonce) {
+        apresCommit(() -> {
+            PushEvent event = new PushEvent("notification", annonce);
+            for (Set<Subscriber> connexions : subscribers.values()) {
+                for (Subscriber subscriber : connexions) {
+                    if (subscriber.role == audience) {
+                        pousser(subscriber, event);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Signaler de nouvelles notifications sans leur contenu (écritures en masse, sans ID connus) :
+     * le client relit sa liste. Un flux SSE sans données n'est pas délivré, d'où le nom de la liste
+     */
+    public void envoyerRafraichissement(Long userId) {
+        apresCommit(() -> envoyer(subscribers.get(userId), new PushEvent("refresh", "notifications")));
+    }
+
+    public void envoyerMessageContact(Long coachId, Object message) {
+        apresCommit(() -> envoyer(subscribers.get(coachId), new PushEvent("contact-message", message)));
+    }
+
+    public boolean estConnecte(Long userId) {
+        Set<Subscriber> connexions = subscribers.get(userId);
+        return connexions != null && !connexions.isEmpty();
+    }
+
+    /**
+     * Commentaire SSE périodique : garde la connexion ouverte derrière les proxys
+     * et détecte les clients partis
+     */
+    @Scheduled(fixedDelayString = "${notifications.push.heartbeat-ms:25000}")
+    public void heartbeat() {
+        PushEvent ping = new PushEvent(null, "ping");
+        subscribers.values().forEach(connexions -> connexions.forEach(subscriber -> pousser(subscriber, ping)));
+    }
+
+    private void envoyer(Collection<Subscriber> connexions, PushEvent event) {
+        if (connexions != null) {
+            connexions.forEach(subscriber -> pousser(subscriber, event));
+        }
+    }
+
+    private void pousser(Subscriber subscriber, PushEvent event) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (!subscriber.buffer.offer(event)) {
+            log.debug("File pleine pour la connexion {} de l'utilisateur {}, déconnexion", subscriber.id, subscriber.userId);
+            fermer(subscriber);
+            return;
+        }
+        planifier(subscriber);
+    }
+
+    // Un seul thread vide la file d'une connexion à la fois : l'ordre des événements est conservé
+    private void planifier(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> vider(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+            fermer(subscriber);
+        }
+    }
+
+    private void vider(Subscriber subscriber) {
+        try {
+            PushEvent event;
+            while (!subscriber.closed && (event = subscriber.buffer.poll()) != null) {
+                if (event.name() == null) {
+                    subscriber.emitter.send(SseEmitter.event().comment(event.data().toString()));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client déconnecté
+            fermer(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (!subscriber.closed && !subscriber.buffer.isEmpty()) {
+            planifier(subscriber);
+        }
+    }
+
+    private void fermer(Subscriber subscriber) {
+        if (subscriber.closed) {
+            return;
+        }
+        subscriber.closed = true;
+        retirer(subscriber);
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            // Déjà fermé
+        }
+    }
+
+    private void retirer(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscriber.buffer.clear();
+        subscribers.computeIfPresent(subscriber.userId, (id, connexions) -> {
+            connexions.remove(subscriber);
+            return connexions.isEmpty() ? null : connexions;
+        });
+    }
+
+    // Rien n'est poussé pour une écriture annulée
+    private void apresCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
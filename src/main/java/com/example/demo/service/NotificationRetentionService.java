@@ -0,0 +1,234 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Notification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rétention des notifications : chaque type a sa durée de conservation (en jours, 0 = illimitée).
+ * Un compacteur planifié déplace les notifications expirées vers notifications_archive
+ * (ou les supprime si l'archivage est désactivé), par petits lots d'une transaction chacun,
+ * pour ne jamais verrouiller longtemps la table des notifications.
+ * La table d'archive est partitionnée par mois : l'archive expirée est supprimée
+ * partition par partition (DROP PARTITION) au lieu d'un DELETE ligne par ligne.
+ * La table des notifications elle-même n'est pas partitionnée : MySQL n'accepte pas de
+ * clé étrangère (user_id) sur une table partitionnée.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class NotificationRetentionService {
+
+    private static final String ARCHIVE = "notifications_archive";
+    private static final String MAX_PARTITION = "p_max";
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String COLUMNS = "id, titre, message, user_id, audience, date_creation, lue, type, reference_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final UnreadCounterService unreadCounterService;
+
+    @Value("${notifications.retention.enabled:true}")
+    private boolean enabled;
+
+    // Durée de conservation par type, en jours (0 = conservées indéfiniment)
+    @Value("#{${notifications.retention.ttl-days:{NOUVELLE_OFFRE:90, OFFRE_MODIFIEE:90, NOUVEL_EVENEMENT:90, " +
+            "EVENEMENT_MODIFIE:60, EVENEMENT_RAPPEL:14, SYSTEME:180}}}")
+    private Map<String, Integer> ttlDays;
+
+    @Value("${notifications.retention.batch-size:500}")
+    private int batchSize;
+
+    // Limite par passage : le reste est traité au passage suivant
+    @Value("${notifications.retention.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    @Value("${notifications.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    // Conservation de l'archive, en mois (0 = illimitée)
+    @Value("${notifications.archive.retention-months:12}")
+    private int archiveRetentionMonths;
+
+    // Partitions mensuelles créées à l'avance
+    @Value("${notifications.archive.months-ahead:2}")
+    private int monthsAhead;
+
+    private final AtomicBoolean archivePrete = new AtomicBoolean();
+    private final AtomicBoolean archivePartitionnee = new AtomicBoolean();
+
+    @Scheduled(fixedDelayString = "${notifications.retention.interval-ms:3600000}",
+            initialDelayString = "${notifications.retention.initial-delay-ms:300000}")
+    public void compacterPlanifie() {
+        if (enabled) {
+            jobLeaseService.executer("notification-retention", Duration.ofMinutes(15), this::compacter);
+        }
+    }
+
+    /**
+     * Un passage complet : archivage des notifications expirées puis purge de l'archive.
+     * Retourne le nombre de notifications retirées par type
+     */
+    public Map<String, Integer> compacter(JobLeaseService.Lease lease) {
+        if (archiveEnabled) {
+            preparerArchive();
+        }
+
+        Map<String, Integer> retirees = new LinkedHashMap<>();
+        int lots = 0;
+        for (Notification.NotificationType type : Notification.NotificationType.values()) {
+            int jours = ttlDays.getOrDefault(type.name(), 0);
+            if (jours <= 0) {
+                continue;
+            }
+            LocalDateTime limite = LocalDateTime.now().minusDays(jours);
+            int total = 0;
+            while (lots < maxBatchesPerRun) {
+                Integer lot = transactionTemplate.execute(status -> {
+                    jobLeaseService.exiger(lease);
+                    return retirerLot(type, limite);
+                });
+                lots++;
+                total += lot;
+                if (lot < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                retirees.put(type.name(), total);
+            }
+        }
+
+        if (archiveEnabled) {
+            maintenirPartitions();
+        }
+        if (!retirees.isEmpty()) {
+            log.info("Rétention des notifications : {} ({} lot(s))", retirees, lots);
+        }
+        return retirees;
+    }
+
+    /**
+     * Retirer un lot de notifications expirées d'un type. Les compteurs de non-lus sont
+     * corrigés pour les notifications directes retirées sans avoir été lues ; ceux des
+     * annonces sont recalculés par la réconciliation périodique
+     */
+    private int retirerLot(Notification.NotificationType type, LocalDateTime limite) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM notifications WHERE type = ? AND date_creation < ? ORDER BY date_creation LIMIT ?",
+                Long.class, type.name(), limite, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] params = ids.toArray();
+
+        jdbcTemplate.query("SELECT user_id, COUNT(*) FROM notifications WHERE id IN (" + in + ") " +
+                "AND user_id IS NOT NULL AND lue = false GROUP BY user_id", rs -> {
+            unreadCounterService.notificationsLues(rs.getLong(1), rs.getLong(2));
+        }, params);
+
+        if (archiveEnabled) {
+            jdbcTemplate.update("INSERT IGNORE INTO " + ARCHIVE + " (" + COLUMNS + ", archived_at) " +
+                    "SELECT " + COLUMNS + ", NOW() FROM notifications WHERE id IN (" + in + ")", params);
+        }
+        return jdbcTemplate.update("DELETE FROM notifications WHERE id IN (" + in + ")", params);
+    }
+
+    /**
+     * Créer la table d'archive si besoin, partitionnée par mois de création.
+     * Si le partitionnement n'est pas disponible, l'archive est créée sans partition
+     */
+    private void preparerArchive() {
+        if (archivePrete.get()) {
+            return;
+        }
+        String colonnes = "id BIGINT NOT NULL, titre VARCHAR(255) NOT NULL, message VARCHAR(1000), " +
+                "user_id BIGINT, audience VARCHAR(20), date_creation DATETIME(6) NOT NULL, lue BIT(1) NOT NULL, " +
+                "type VARCHAR(32), reference_id BIGINT, archived_at DATETIME(6) NOT NULL, " +
+                // La colonne de partitionnement doit faire partie de la clé primaire
+                "PRIMARY KEY (id, date_creation), KEY idx_notifications_archive_user_id (user_id, id)";
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ARCHIVE + " (" + colonnes + ") " +
+                    "PARTITION BY RANGE COLUMNS(date_creation) " +
+                    "(PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+        } catch (RuntimeException e) {
+            log.warn("Archive des notifications créée sans partitionnement : {}", e.getMessage());
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ARCHIVE + " (" + colonnes + ")");
+        }
+        archivePartitionnee.set(!partitions().isEmpty());
+        archivePrete.set(true);
+    }
+
+    /**
+     * Ajouter les partitions des prochains mois et supprimer celles dont la rétention est dépassée
+     */
+    private void maintenirPartitions() {
+        if (!archivePartitionnee.get()) {
+            // Sans partition, l'archive expirée est supprimée par lots
+            if (archiveRetentionMonths > 0) {
+                LocalDate limite = YearMonth.now().minusMonths(archiveRetentionMonths).atDay(1);
+                int supprimees;
+                do {
+                    supprimees = jdbcTemplate.update("DELETE FROM " + ARCHIVE + " WHERE date_creation < ? LIMIT ?",
+                            limite.atStartOfDay(), batchSize);
+                } while (supprimees == batchSize);
+            }
+            return;
+        }
+
+        TreeSet<YearMonth> mois = new TreeSet<>();
+        for (String nom : partitions()) {
+            if (!MAX_PARTITION.equals(nom)) {
+                mois.add(YearMonth.parse(nom, PARTITION_FORMAT));
+            }
+        }
+
+        // Les nouvelles partitions sont découpées dans p_max, toujours après la dernière existante
+        YearMonth courant = YearMonth.now();
+        YearMonth suivant = mois.isEmpty()
+                ? courant.minusMonths(Math.max(archiveRetentionMonths, 1))
+                : mois.last().plusMonths(1);
+        StringBuilder ajouts = new StringBuilder();
+        for (YearMonth m = suivant; !m.isAfter(courant.plusMonths(monthsAhead)); m = m.plusMonths(1)) {
+            ajouts.append("PARTITION ").append(m.format(PARTITION_FORMAT))
+                    .append(" VALUES LESS THAN ('").append(m.plusMonths(1).atDay(1)).append("'), ");
+        }
+        if (ajouts.length() > 0) {
+            jdbcTemplate.execute("ALTER TABLE " + ARCHIVE + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" +
+                    ajouts + "PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+        }
+
+        if (archiveRetentionMonths > 0) {
+            YearMonth limite = courant.minusMonths(archiveRetentionMonths);
+            for (YearMonth m : mois.headSet(limite)) {
+                jdbcTemplate.execute("ALTER TABLE " + ARCHIVE + " DROP PARTITION " + m.format(PARTITION_FORMAT));
+                log.info("Partition {} de l'archive des notifications supprimée", m.format(PARTITION_FORMAT));
+            }
+        }
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT partition_name FROM information_schema.partitions " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL " +
+                "ORDER BY partition_ordinal_position", String.class, ARCHIVE);
+    }
+}
@@ -1,16 +1,25 @@
 package com.example.demo.service;
 
 import com.example.demo.model.*;
-import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.NotificationReadMarkerRepository;
 import com.example.demo.repository.NotificationRepository;
 import com.example.demo.repository.UserRepository;
+import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @Service
 public class NotificationService {
@@ -22,51 +31,105 @@ public class NotificationService {
     private UserRepository userRepository;
 
     @Autowired
-    private EventRepository eventRepository;
+    private NotificationReadMarkerRepository readMarkerRepository;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private NotificationPushService notificationPushService;
+
+    @Value("${notifications.mark-read.max-ids:1000}")
+    private int maxIdsParMarquage;
+
+    // Annonces suivies au-delà du seuil de lecture : borne la taille du bitmap (1 bit par annonce)
+    @Value("${notifications.read-marker.window-size:1024}")
+    private int tailleFenetre;
+
+    @Value("${notifications.history.page-size:50}")
+    private int tailleHistorique;
+
+    @Value("${notifications.history.max-size:200}")
+    private int maxHistorique;
+
+    @Data
+    public static class HistoriquePage {
+        private List<Notification> items;
+        // ID à passer en "avant" pour la page suivante, null s'il n'y en a plus
+        private Long nextCursor;
+    }
+
+    private static final Comparator<Notification> PLUS_RECENTES_D_ABORD =
+            Comparator.comparing(Notification::getDateCreation).reversed();
 
     @Transactional
     public void notifierNouvelleOffre(Offre offre) {
         System.out.println("Notification pour nouvelle offre: " + offre.getId());
-        List<User> utilisateurs = userRepository.findByRole(Role.GYMZER);
-        System.out.println("Nombre d'utilisateurs GYMZER: " + utilisateurs.size());
-
-
-        for (User user : utilisateurs) {
-            Notification notification = new Notification(
-                    "Nouvelle offre disponible",
-                    "Une nouvelle offre \"" + offre.getTitre() + "\" est disponible à " +
-                            offre.getPrix() + "€. Code promo: " + offre.getCodePromo(),
-                    user,
-                    Notification.NotificationType.NOUVELLE_OFFRE,
-                    offre.getId()
-            );
-            notificationRepository.save(notification);
-        }
+        // Une seule annonce pour tous les GYMZER, lue via leur marqueur de lecture
+        Notification notification = new Notification(
+                "Nouvelle offre disponible",
+                "Une nouvelle offre \"" + offre.getTitre() + "\" est disponible à " +
+                        offre.getPrix() + "€. Code promo: " + offre.getCodePromo(),
+                Role.GYMZER,
+                Notification.NotificationType.NOUVELLE_OFFRE,
+                offre.getId()
+        );
+        notificationRepository.save(notification);
+        unreadCounterService.annonceCreee(Role.GYMZER);
+        notificationPushService.envoyerAnnonce(Role.GYMZER, versPush(notification));
     }
 
     @Transactional
     public void notifierNouvelEvenement(Event event) {
-        List<User> utilisateurs = userRepository.findByRole(Role.GYMZER);
-
-        for (User user : utilisateurs) {
-            Notification notification = new Notification(
-                    "Nouvel événement à venir",
-                    "Un nouvel événement \"" + event.getTitre() + "\" aura lieu le " +
-                            event.getDate() + " à " + event.getAdresse() + ". Prix: " + event.getPrix() + "€",
-                    user,
-                    Notification.NotificationType.NOUVEL_EVENEMENT,
-                    event.getId()
-            );
-            notificationRepository.save(notification);
-        }
+        Notification notification = new Notification(
+                "Nouvel événement à venir",
+                "Un nouvel événement \"" + event.getTitre() + "\" aura lieu le " +
+                        event.getDate() + " à " + event.getAdresse() + ". Prix: " + event.getPrix() + "€",
+                Role.GYMZER,
+                Notification.NotificationType.NOUVEL_EVENEMENT,
+                event.getId()
+        );
+        notificationRepository.save(notification);
+        unreadCounterService.annonceCreee(Role.GYMZER);
+        notificationPushService.envoyerAnnonce(Role.GYMZER, versPush(notification));
     }
 
+    /**
+     * Notifications les plus récentes de l'utilisateur, limitées à notifications.history.max-size :
+     * les suivantes se lisent avec getHistorique
+     */
     @Transactional(readOnly = true)
     public List<Notification> getNotificationsUtilisateur(Long userId) {
+        return getHistorique(userId, null, maxHistorique).getItems();
+    }
+
+    /**
+     * Page d'historique (notifications directes et annonces) avant l'ID "avant", par ID décroissant.
+     * Chaque page coûte deux lectures d'index bornées, quelle que soit la taille de la table
+     */
+    @Transactional(readOnly = true)
+    public HistoriquePage getHistorique(Long userId, Long avant, Integer limit) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        int taille = limit == null ? tailleHistorique : Math.max(1, Math.min(limit, maxHistorique));
+        long avantId = avant == null ? Long.MAX_VALUE : avant;
+        PageRequest page = PageRequest.of(0, taille);
+
+        EtatLecture etat = etatLecture(getMarqueur(userId), user.getRole());
+        List<Notification> notifications = new ArrayList<>(
+                notificationRepository.findHistorique(userId, avantId, page));
+        for (Notification annonce : notificationRepository.findAnnoncesHistorique(user.getRole(), avantId, page)) {
+            notifications.add(pourUtilisateur(annonce, user, etat.estLue(annonce.getId())));
+        }
+        // Les deux listes partagent la séquence d'IDs : on garde les "taille" plus récentes
+        notifications.sort(Comparator.comparing(Notification::getId).reversed());
+        List<Notification> items = notifications.size() > taille
+                ? new ArrayList<>(notifications.subList(0, taille)) : notifications;
 
-        return notificationRepository.findByDestinataireOrderByDateCreationDesc(user);
+        HistoriquePage resultat = new HistoriquePage();
+        resultat.setItems(items);
+        resultat.setNextCursor(items.size() == taille ? items.get(items.size() - 1).getId() : null);
+        return resultat;
     }
 
     @Transactional(readOnly = true)
@@ -74,7 +137,11 @@ public class NotificationService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
 
-        return notificationRepository.findByDestinataireAndLueOrderByDateCreationDesc(user, false);
+        List<Notification> notifications = new ArrayList<>(
+                notificationRepository.findByDestinataireAndLueOrderByDateCreationDesc(user, false));
+        notifications.addAll(getAnnoncesNonLues(user));
+        notifications.sort(PLUS_RECENTES_D_ABORD);
+        return notifications;
     }
 
     @Transactional
@@ -85,70 +152,326 @@ public class NotificationService {
         Notification notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("Notification non trouvée"));
 
+        if (notification.isAnnonce()) {
+            if (notification.getAudience() != user.getRole()) {
+                throw new RuntimeException("Vous n'êtes pas autorisé à modifier cette notification");
+            }
+            marquerAnnoncesLues(user.getId(), user.getRole(), List.of(notification.getId()));
+            return;
+        }
+
         if (!notification.getDestinataire().getId().equals(user.getId())) {
             throw new RuntimeException("Vous n'êtes pas autorisé à modifier cette notification");
         }
 
-        notification.setLue(true);
-        notificationRepository.save(notification);
+        if (!notification.isLue()) {
+            notification.setLue(true);
+            notificationRepository.save(notification);
+            unreadCounterService.notificationsLues(user.getId(), 1);
+        }
     }
 
+    /**
+     * Tout marquer comme lu : une requête UPDATE pour les notifications directes,
+     * le seuil du marqueur pour les annonces. Retourne le nombre de notifications passées à lue
+     */
     @Transactional
-    public void marquerToutesCommeLues(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+    public int marquerToutesCommeLues(Long userId) {
+        return marquerCommeLuesJusqua(userId, Long.MAX_VALUE);
+    }
 
-        List<Notification> notifications = notificationRepository.findByDestinataireAndLueOrderByDateCreationDesc(user, false);
-        for (Notification notification : notifications) {
-            notification.setLue(true);
-            notificationRepository.save(notification);
+    /**
+     * Marquer comme lues toutes les notifications (directes et annonces) d'ID inférieur ou égal à maxId
+     */
+    @Transactional
+    public int marquerCommeLuesJusqua(Long userId, Long maxId) {
+        Role role = getRole(userId);
+        int directes = notificationRepository.marquerLuesJusqua(userId, maxId);
+        unreadCounterService.notificationsLues(userId, directes);
+        return directes + avancerSeuilAnnonces(userId, role, maxId);
+    }
+
+    /**
+     * Marquer comme lues les notifications de la liste ; les IDs qui ne concernent pas
+     * l'utilisateur sont ignorés
+     */
+    @Transactional
+    public int marquerCommeLuesParmi(Long userId, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        if (ids.size() > maxIdsParMarquage) {
+            throw new IllegalArgumentException("Trop de notifications (maximum " + maxIdsParMarquage + ")");
         }
+        Role role = getRole(userId);
+        int directes = notificationRepository.marquerLuesParmi(userId, ids);
+        unreadCounterService.notificationsLues(userId, directes);
+
+        return directes + marquerAnnoncesLues(userId, role, notificationRepository.findIdsAnnoncesParmi(role, ids));
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Servi par les compteurs de non-lus, sans requête sur la table des notifications
+     */
     public long compterNotificationsNonLues(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        return unreadCounterService.getNotificationsNonLues(userId);
+    }
 
-        return notificationRepository.countByDestinataireAndLue(user, false);
+    private List<Notification> getAnnoncesNonLues(User user) {
+        NotificationReadMarker marker = getMarqueur(user.getId());
+        EtatLecture etat = etatLecture(marker, user.getRole());
+        List<Notification> nonLues = new ArrayList<>();
+        for (Notification annonce : notificationRepository.findAnnoncesApres(user.getRole(), marker.getLastReadId())) {
+            if (!etat.estLue(annonce.getId())) {
+                nonLues.add(pourUtilisateur(annonce, user, false));
+            }
+        }
+        return nonLues;
     }
 
+    /**
+     * Créer le marqueur d'un nouvel utilisateur sur la dernière annonce publiée pour son rôle :
+     * l'historique antérieur à l'inscription n'apparaît pas comme non lu
+     */
     @Transactional
-    public void notifierRappelEvenement() {
-        // Récupérer la date de demain
-        LocalDate demain = LocalDate.now().plusDays(1);
-
-        // Récupérer tous les événements qui auront lieu demain
-        List<Event> evenementsDemain = eventRepository.findByDate(demain);
-
-        if (evenementsDemain.isEmpty()) {
-            return; // Aucun événement demain, rien à faire
-        }
-
-        // Récupérer tous les utilisateurs clients
-        List<User> clients = userRepository.findByRole(Role.GYMZER);
-
-        // Pour chaque événement de demain, envoyer une notification à tous les clients
-        for (Event event : evenementsDemain) {
-            String titre = "Rappel: événement demain";
-            String message = "Rappel: L'événement \"" + event.getTitre() + "\" aura lieu demain " +
-                    event.getDate() + " à " + event.getHeureDebut() + ", " +
-                    event.getAdresse() + ". Prix: " + event.getPrix() + "€";
-
-            for (User client : clients) {
-                Notification notification = new Notification(
-                        titre,
-                        message,
-                        client,
-                        Notification.NotificationType.EVENEMENT_RAPPEL,
-                        event.getId()
-                );
-                notificationRepository.save(notification);
+    public void initialiserMarqueur(Long userId, Role role) {
+        Long dernierId = notificationRepository.findMaxIdAnnonce(role);
+        NotificationReadMarker marker = new NotificationReadMarker(userId);
+        marker.setLastReadId(dernierId != null ? dernierId : 0L);
+        readMarkerRepository.save(marker);
+        unreadCounterService.definirAnnoncesLues(userId,
+                dernierId != null ? notificationRepository.countAnnoncesJusqua(role, dernierId) : 0);
+    }
+
+    /**
+     * État de lecture au-delà du seuil : fenêtre des premières annonces du rôle après le seuil
+     * (au plus notifications.read-marker.window-size) et bit i = i-ème annonce de la fenêtre
+     */
+    private final class EtatLecture {
+        private final Role role;
+        private long seuil;
+        private List<Long> fenetre;
+        private BitSet lues;
+        // Seuil avancé au-delà d'annonces non lues pour garder le bitmap borné
+        private boolean seuilForce;
+
+        private EtatLecture(Role role, long seuil, List<Long> fenetre, BitSet lues) {
+            this.role = role;
+            this.seuil = seuil;
+            this.fenetre = fenetre;
+            this.lues = lues;
+        }
+
+        private boolean estLue(long annonceId) {
+            if (annonceId <= seuil) {
+                return true;
             }
+            int rang = Collections.binarySearch(fenetre, annonceId);
+            return rang >= 0 && lues.get(rang);
         }
 
-        // Optionnel: Ajouter une entrée de log pour le suivi
-        System.out.println("Envoi de rappels pour " + evenementsDemain.size() +
-                " événements prévus pour demain (" + demain + ")");
+        /**
+         * Marquer une annonce du rôle ; false si elle était déjà lue
+         */
+        private boolean marquer(long annonceId) {
+            if (estLue(annonceId)) {
+                return false;
+            }
+            int rang = Collections.binarySearch(fenetre, annonceId);
+            if (rang < 0) {
+                // Au-delà de la fenêtre : le seuil passe juste avant les tailleFenetre - 1 annonces qui la précèdent
+                List<Long> precedentes = notificationRepository.findIdsAnnoncesAvant(role, annonceId,
+                        PageRequest.of(0, tailleFenetre));
+                if (precedentes.size() < tailleFenetre) {
+                    return false;
+                }
+                deplacerSeuil(precedentes.get(precedentes.size() - 1));
+                seuilForce = true;
+                rang = Collections.binarySearch(fenetre, annonceId);
+                if (rang < 0) {
+                    return false;
+                }
+            }
+            lues.set(rang);
+            return true;
+        }
+
+        /**
+         * Toutes les annonces d'ID inférieur ou égal à dernierId deviennent lues
+         */
+        private void avancerJusqua(long dernierId) {
+            if (dernierId <= seuil) {
+                return;
+            }
+            int rang = Collections.binarySearch(fenetre, dernierId);
+            int retirees = rang >= 0 ? rang + 1 : -rang - 1;
+            lues = lues.get(retirees, Math.max(lues.length(), retirees));
+            fenetre = fenetre.subList(retirees, fenetre.size());
+            seuil = dernierId;
+        }
+
+        /**
+         * Avancer le seuil tant que les annonces qui le suivent sont toutes lues
+         */
+        private void compacter() {
+            int lusEnTete = lues.nextClearBit(0);
+            if (lusEnTete > 0 && lusEnTete <= fenetre.size()) {
+                avancerJusqua(fenetre.get(lusEnTete - 1));
+            }
+        }
+
+        // Les lectures au-delà du nouveau seuil sont reportées dans la nouvelle fenêtre
+        private void deplacerSeuil(long nouveauSeuil) {
+            List<Long> nouvelleFenetre = fenetre(role, nouveauSeuil);
+            BitSet nouvellesLues = new BitSet();
+            for (int i = lues.nextSetBit(0); i >= 0 && i < fenetre.size(); i = lues.nextSetBit(i + 1)) {
+                int rang = Collections.binarySearch(nouvelleFenetre, fenetre.get(i));
+                if (rang >= 0) {
+                    nouvellesLues.set(rang);
+                }
+            }
+            seuil = nouveauSeuil;
+            fenetre = nouvelleFenetre;
+            lues = nouvellesLues;
+        }
+
+        private long nombreLues() {
+            return notificationRepository.countAnnoncesJusqua(role, seuil) + lues.cardinality();
+        }
+
+        private void enregistrer(NotificationReadMarker marker) {
+            marker.setLastReadId(seuil);
+            marker.setReadBitmap(lues.isEmpty() ? null : lues.toByteArray());
+            marker.setBitmapParRang(true);
+            readMarkerRepository.save(marker);
+        }
+    }
+
+    private EtatLecture etatLecture(NotificationReadMarker marker, Role role) {
+        long seuil = marker.getLastReadId();
+        List<Long> fenetre = fenetre(role, seuil);
+        BitSet bitmap = marker.getReadBitmap() == null ? new BitSet() : BitSet.valueOf(marker.getReadBitmap());
+        if (Boolean.TRUE.equals(marker.getBitmapParRang())) {
+            return new EtatLecture(role, seuil, fenetre, bitmap.get(0, Math.min(bitmap.length(), fenetre.size())));
+        }
+        // Ancien format : bit i = annonce d'ID seuil + 1 + i
+        BitSet lues = new BitSet();
+        for (int rang = 0; rang < fenetre.size(); rang++) {
+            long index = fenetre.get(rang) - seuil - 1;
+            if (index < Integer.MAX_VALUE && bitmap.get((int) index)) {
+                lues.set(rang);
+            }
+        }
+        return new EtatLecture(role, seuil, fenetre, lues);
+    }
+
+    private List<Long> fenetre(Role role, long seuil) {
+        return notificationRepository.findIdsAnnoncesApres(role, seuil, PageRequest.of(0, tailleFenetre));
+    }
+
+    /**
+     * Marquer des annonces comme lues, puis avancer le seuil tant que les annonces
+     * qui le suivent sont toutes lues : le bitmap ne garde que les lectures isolées.
+     * Met à jour le compteur et retourne le nombre d'annonces nouvellement lues
+     */
+    private int marquerAnnoncesLues(Long userId, Role role, Collection<Long> annonceIds) {
+        if (annonceIds.isEmpty()) {
+            return 0;
+        }
+        NotificationReadMarker marker = getMarqueurPourMaj(userId);
+        EtatLecture etat = etatLecture(marker, role);
+        List<Long> ids = annonceIds.stream().sorted().toList();
+        // Une annonce au-delà d'une fenêtre pleine peut forcer le seuil : le compteur est alors recalculé
+        boolean horsFenetre = etat.fenetre.size() == tailleFenetre
+                && ids.get(ids.size() - 1) > etat.fenetre.get(tailleFenetre - 1);
+        long avant = horsFenetre ? etat.nombreLues() : 0;
+
+        int nouvelles = 0;
+        for (Long annonceId : ids) {
+            if (etat.marquer(annonceId)) {
+                nouvelles++;
+            }
+        }
+        if (nouvelles == 0) {
+            return 0;
+        }
+        etat.compacter();
+        etat.enregistrer(marker);
+
+        if (etat.seuilForce) {
+            long apres = etat.nombreLues();
+            unreadCounterService.definirAnnoncesLues(userId, apres);
+            return (int) (apres - avant);
+        }
+        unreadCounterService.annoncesLues(userId, nouvelles);
+        return nouvelles;
+    }
+
+    /**
+     * Placer le seuil sur la dernière annonce d'ID inférieur ou égal à maxId ; le compteur
+     * d'annonces lues est recalculé depuis le marqueur. Retourne le nombre d'annonces nouvellement lues
+     */
+    private int avancerSeuilAnnonces(Long userId, Role role, Long maxId) {
+        Long dernierId = notificationRepository.findMaxIdAnnonceJusqua(role, maxId);
+        NotificationReadMarker marker = getMarqueurPourMaj(userId);
+        if (dernierId == null || dernierId <= marker.getLastReadId()) {
+            return 0;
+        }
+        EtatLecture etat = etatLecture(marker, role);
+        long avant = etat.nombreLues();
+        etat.avancerJusqua(dernierId);
+        etat.compacter();
+        etat.enregistrer(marker);
+
+        long apres = etat.nombreLues();
+        unreadCounterService.definirAnnoncesLues(userId, apres);
+        return (int) (apres - avant);
+    }
+
+    private Role getRole(Long userId) {
+        try {
+            return unreadCounterService.getRole(userId);
+        } catch (NoSuchElementException e) {
+            throw new RuntimeException("Utilisateur non trouvé");
+        }
+    }
+
+    // Lecture seule : un utilisateur inscrit avant les marqueurs n'a encore lu aucune annonce
+    private NotificationReadMarker getMarqueur(Long userId) {
+        return readMarkerRepository.findById(userId).orElseGet(() -> new NotificationReadMarker(userId));
+    }
+
+    private NotificationReadMarker getMarqueurPourMaj(Long userId) {
+        return readMarkerRepository.findForUpdate(userId)
+                .orElseGet(() -> readMarkerRepository.save(new NotificationReadMarker(userId)));
+    }
+
+    /**
+     * Vue d'une annonce pour un utilisateur : même forme qu'une notification directe,
+     * sans toucher à la ligne partagée
+     */
+    private Notification pourUtilisateur(Notification annonce, User user, boolean lue) {
+        Notification vue = new Notification(annonce.getTitre(), annonce.getMessage(), user,
+                annonce.getType(), annonce.getReferenceId());
+        vue.setId(annonce.getId());
+        vue.setAudience(annonce.getAudience());
+        vue.setDateCreation(annonce.getDateCreation());
+        vue.setLue(lue);
+        return vue;
+    }
+
+    /**
+     * Contenu poussé en temps réel : uniquement les champs affichés, sans l'entité utilisateur
+     */
+    private static Map<String, Object> versPush(Notification notification) {
+        Map<String, Object> push = new LinkedHashMap<>();
+        push.put("id", notification.getId());
+        push.put("titre", notification.getTitre());
+        push.put("message", notification.getMessage());
+        push.put("type", notification.getType());
+        push.put("referenceId", notification.getReferenceId());
+        push.put("dateCreation", notification.getDateCreation());
+        push.put("lue", false);
+        return push;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.example.demo.service;
 
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Offre;
+import com.example.demo.model.OutboxEventType;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import com.example.demo.repository.OffreRepository;
@@ -21,7 +23,7 @@ public class OffreService {
     private UserService userService;
 
     @Autowired
-    private NotificationService notificationService;
+    private NotificationOutboxService notificationOutboxService;
 
     @Autowired
     private UserRepository userRepository; // Utiliser directement le repository
@@ -33,9 +35,8 @@ public class OffreService {
 
 
     @Transactional
-    public Offre creerOffre(String phoneNumber, OffreDto offreDto) {
-        User createur = userRepository.findByPhoneNumber(phoneNumber)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+    public Offre creerOffre(AuthenticatedUser auteur, OffreDto offreDto) {
+        User createur = userRepository.getReferenceById(auteur.id());
 
         Offre offre = new Offre();
         offre.setTitre(offreDto.getTitre());
@@ -47,18 +48,15 @@ public class OffreService {
 
         Offre offreCreee = offreRepository.save(offre);
 
-        // Ajouter cette ligne pour envoyer les notifications
-        notificationService.notifierNouvelleOffre(offreCreee);
+        // Diffusion en arrière-plan : seule la ligne d'outbox est écrite dans cette transaction
+        notificationOutboxService.publier(OutboxEventType.NOUVELLE_OFFRE, offreCreee.getId());
 
         return offreCreee;
     }
 
     @Transactional(readOnly = true)
-    public List<Offre> getOffresUtilisateur(String phoneNumber) {
-        User createur = userRepository.findByPhoneNumber(phoneNumber)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé avec ce numéro de téléphone"));
-
-        return offreRepository.findByCreateur(createur);
+    public List<Offre> getOffresUtilisateur(Long userId) {
+        return offreRepository.findByCreateurId(userId);
     }
 
     @Transactional(readOnly = true)
@@ -1,27 +1,82 @@
 package com.example.demo.service;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
 
+/**
+ * Codes de vérification à usage unique (inscription, connexion, changement de numéro).
+ * Un code expire après otp.ttl-seconds et est bloqué après otp.max-attempts essais ;
+ * générer un nouveau code pour la même clé remplace l'ancien
+ */
 @Service
+@Slf4j
+@RequiredArgsConstructor
 public class OtpService {
-    private final Map<String, String> otpStorage = new HashMap<>();
 
-    public String generateOtp(String phoneNumber) {
-        String otp = String.valueOf(new Random().nextInt(900000) + 100000); // Génère un OTP à 6 chiffres
-        otpStorage.put(phoneNumber, otp);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final OtpStore otpStore;
+
+    @Value("${otp.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${otp.max-attempts:5}")
+    private int maxAttempts;
+
+    /**
+     * Générer un code à 6 chiffres pour la clé, avec une donnée associée éventuelle
+     */
+    public String generer(String key, String payload) {
+        String code = String.valueOf(100000 + RANDOM.nextInt(900000));
+        otpStore.enregistrer(key, new OtpStore.Otp(empreinte(key, code), payload), Duration.ofSeconds(ttlSeconds));
+        return code;
+    }
+
+    /**
+     * Vérifier et consommer le code : vide s'il est incorrect, expiré, bloqué ou déjà utilisé
+     */
+    public Optional<OtpStore.Otp> verifier(String key, String code) {
+        if (code == null) {
+            return Optional.empty();
+        }
+        Optional<OtpStore.Otp> otp = otpStore.tenter(key, maxAttempts);
+        if (otp.isEmpty()) {
+            return Optional.empty();
+        }
+        byte[] attendu = otp.get().codeHash().getBytes(StandardCharsets.US_ASCII);
+        byte[] recu = empreinte(key, code).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(attendu, recu) || !otpStore.consommer(key, otp.get().codeHash())) {
+            return Optional.empty();
+        }
         return otp;
     }
 
-    public boolean validateOtp(String phoneNumber, String otp) {
-        return otp.equals(otpStorage.get(phoneNumber));
+    @Scheduled(fixedDelayString = "${otp.purge-interval-ms:60000}")
+    public void purgerExpires() {
+        int supprimes = otpStore.purgerExpires();
+        if (supprimes > 0) {
+            log.debug("{} code(s) expiré(s) supprimé(s)", supprimes);
+        }
     }
 
-    public void clearOtp(String phoneNumber) {
-        otpStorage.remove(phoneNumber);
+    // La clé entre dans l'empreinte : le même code n'a pas la même empreinte pour deux numéros
+    private static String empreinte(String key, String code) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest((key + ':' + code).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
     }
 }
-
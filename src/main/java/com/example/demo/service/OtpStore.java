@@ -0,0 +1,35 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Stockage des codes à usage unique. L'implémentation est choisie par otp.store
+ * (database par défaut, codes partagés entre les instances ; memory pour une instance unique)
+ */
+public interface OtpStore {
+
+    record Otp(String codeHash, String payload) {
+    }
+
+    /**
+     * Remplacer le code en attente pour la clé ; les tentatives repartent de zéro
+     */
+    void enregistrer(String key, Otp otp, Duration ttl);
+
+    /**
+     * Compter une tentative et retourner le code en attente, vide s'il est absent,
+     * expiré ou si le nombre maximal de tentatives est atteint
+     */
+    Optional<Otp> tenter(String key, int maxAttempts);
+
+    /**
+     * Supprimer le code s'il est toujours celui donné ; false si un autre appel l'a déjà consommé ou remplacé
+     */
+    boolean consommer(String key, String codeHash);
+
+    /**
+     * Supprimer les codes expirés, retourne le nombre de codes supprimés
+     */
+    int purgerExpires();
+}
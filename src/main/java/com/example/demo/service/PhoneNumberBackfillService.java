@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import com.example.demo.util.PhoneNumberNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remplissage de la colonne phone_e164 pour les utilisateurs créés avant son ajout.
+ * Parcours par ID (pagination par clé), un lot à la fois. Tant que le remplissage n'est pas
+ * terminé, UserService complète la recherche par numéro canonique par l'ancienne recherche.
+ * Les numéros invalides ou en conflit (le même numéro enregistré avec et sans "+")
+ * sont laissés vides et signalés dans les logs pour une correction manuelle.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PhoneNumberBackfillService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseService jobLeaseService;
+
+    @Value("${users.phone-backfill.batch-size:500}")
+    private int batchSize;
+
+    private final AtomicBoolean termine = new AtomicBoolean();
+
+    public boolean isTermine() {
+        return termine.get();
+    }
+
+    @Scheduled(fixedDelayString = "${users.phone-backfill.interval-ms:60000}",
+            initialDelayString = "${users.phone-backfill.initial-delay-ms:10000}")
+    public void remplirPlanifie() {
+        if (termine.get()) {
+            return;
+        }
+        if (!resteARemplir()) {
+            termine.set(true);
+            return;
+        }
+        jobLeaseService.executer("phone-e164-backfill", Duration.ofMinutes(10), lease -> remplir());
+    }
+
+    /**
+     * Un passage complet sur les utilisateurs sans numéro canonique.
+     * Retourne le nombre de lignes remplies
+     */
+    public int remplir() {
+        long lastId = 0;
+        int remplies = 0;
+        int ignorees = 0;
+        while (true) {
+            List<Map<String, Object>> lot = jdbcTemplate.queryForList(
+                    "SELECT id, phone_number FROM `user` WHERE phone_e164 IS NULL AND id > ? ORDER BY id LIMIT ?",
+                    lastId, batchSize);
+            if (lot.isEmpty()) {
+                break;
+            }
+            for (Map<String, Object> ligne : lot) {
+                long id = ((Number) ligne.get("id")).longValue();
+                lastId = id;
+                String e164 = PhoneNumberNormalizer.normaliserOuNull((String) ligne.get("phone_number"));
+                if (e164 == null) {
+                    ignorees++;
+                    log.warn("Numéro invalide pour l'utilisateur {}, phone_e164 laissé vide", id);
+                    continue;
+                }
+                try {
+                    remplies += jdbcTemplate.update(
+                            "UPDATE `user` SET phone_e164 = ? WHERE id = ? AND phone_e164 IS NULL", e164, id);
+                } catch (DataIntegrityViolationException e) {
+                    ignorees++;
+                    log.warn("Numéro {} de l'utilisateur {} déjà utilisé par un autre compte", e164, id);
+                }
+            }
+        }
+        termine.set(true);
+        log.info("Numéros canoniques remplis : {} (ignorés : {})", remplies, ignorees);
+        return remplies;
+    }
+
+    private boolean resteARemplir() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS(SELECT 1 FROM `user` WHERE phone_e164 IS NULL)", Boolean.class));
+    }
+}
@@ -14,13 +14,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -53,6 +51,12 @@ public class PhotoService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
     @Value("${app.upload.dir:${user.home}/uploads/thumbnails}")
     private String uploadDir;
 
@@ -60,18 +64,11 @@ public class PhotoService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
 
-        // Create upload directory if it doesn't exist
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        // Generate unique filename
-        String uniqueFileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-        Path filePath = uploadPath.resolve(uniqueFileName);
+        // Save the file to the shared store (deduplicated by content hash)
+        Path filePath = mediaStore.store(file, Paths.get(uploadDir), ".jpg").path();
 
-        // Save the file to the filesystem
-        Files.copy(file.getInputStream(), filePath);
+        // Prepare the reduced sizes used by list screens
+        imageDerivativeService.genererDerivesAsync(filePath);
 
         // Save the path in the database
         Photo photo = new Photo();
@@ -151,13 +148,9 @@ public class PhotoService {
         Photo photo = photoRepository.findById(photoId)
                 .orElseThrow(() -> new RuntimeException("Photo non trouvée"));
 
-        try {
-            // Delete the file from the filesystem
-            Path filePath = Paths.get(photo.getThumbnailPath());
-            Files.deleteIfExists(filePath);
-        } catch (IOException e) {
-            // Log the error but continue to delete from database
-            System.err.println("Impossible de supprimer le fichier: " + e.getMessage());
+        // Release the file: it is only deleted once no other photo shares it
+        if (photo.getThumbnailPath() != null) {
+            mediaStore.release(Paths.get(photo.getThumbnailPath()));
         }
 
         // Delete the photo entry from the database
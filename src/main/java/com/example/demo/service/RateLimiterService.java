@@ -0,0 +1,195 @@
+package com.example.demo.service;
+
+import com.example.demo.util.PhoneNumberNormalizer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Limitation de débit par seaux à jetons, en mémoire et par instance. Chaque politique
+ * (capacité / période en secondes) s'applique séparément à chaque clé : numéro de téléphone,
+ * adresse IP ou ID utilisateur. Un seau est mis à jour par compare-and-set, sans verrou ;
+ * un seau redevenu plein équivaut à un seau absent et est retiré par le balayage périodique.
+ * Les contrôleurs appellent {@link #exiger} avant tout accès à la base ou envoi de SMS.
+ */
+@Service
+@Slf4j
+public class RateLimiterService {
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // Politique par nom : "capacité/période en secondes"
+    @Value("#{${rate-limit.policies:{'register-phone':'3/600', 'register-ip':'20/600', " +
+            "'login-phone':'5/600', 'login-ip':'30/600', 'phone-change-phone':'3/600', 'phone-change-ip':'10/600', " +
+            "'contact-user':'20/600', 'contact-ip':'30/600'}}}")
+    private Map<String, String> policyDefinitions;
+
+    @Value("${rate-limit.max-keys:100000}")
+    private int maxKeys;
+
+    // Derrière un proxy de confiance seulement : sinon l'en-tête est fourni par le client
+    @Value("${rate-limit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
+    private record Policy(int capacity, double tokensPerNano) {
+        long nanosToFill(double tokens) {
+            return (long) Math.ceil((capacity - tokens) / tokensPerNano);
+        }
+    }
+
+    private record State(double tokens, long updatedAt) {
+    }
+
+    private static final class Bucket {
+        private final Policy policy;
+        private final AtomicReference<State> state;
+
+        private Bucket(Policy policy, long now) {
+            this.policy = policy;
+            this.state = new AtomicReference<>(new State(policy.capacity(), now));
+        }
+    }
+
+    private Map<String, Policy> policies;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Map<String, Policy> parsed = new HashMap<>();
+        policyDefinitions.forEach((name, definition) -> {
+            String[] parts = definition.split("/");
+            int capacity = Integer.parseInt(parts[0].trim());
+            long periodSeconds = Long.parseLong(parts[1].trim());
+            if (capacity <= 0 || periodSeconds <= 0) {
+                throw new IllegalStateException("Politique de limitation invalide : " + name + "=" + definition);
+            }
+            parsed.put(name, new Policy(capacity, (double) capacity / TimeUnit.SECONDS.toNanos(periodSeconds)));
+        });
+        policies = Map.copyOf(parsed);
+    }
+
+    /**
+     * Consommer un jeton du seau (politique, clé) ; RateLimitExceededException (429) si le seau
+     * est vide. Une clé nulle ou vide n'est pas limitée
+     */
+    public void exiger(String policyName, String key) {
+        if (!enabled || key == null || key.isBlank()) {
+            return;
+        }
+        Policy policy = policies.get(policyName);
+        if (policy == null) {
+            throw new IllegalArgumentException("Politique de limitation inconnue : " + policyName);
+        }
+
+        long now = System.nanoTime();
+        Bucket bucket = bucket(policyName + ':' + key, policy, now);
+        if (bucket == null) {
+            // Table pleine même après balayage : on refuse plutôt que d'oublier les limites existantes
+            log.warn("Limitation de débit : {} clés suivies, requête {} refusée", buckets.size(), policyName);
+            throw new RateLimitExceededException(1);
+        }
+
+        while (true) {
+            State current = bucket.state.get();
+            double tokens = Math.min(policy.capacity(),
+                    current.tokens() + (now - current.updatedAt()) * policy.tokensPerNano());
+            if (tokens < 1) {
+                long retryAfterNanos = (long) Math.ceil((1 - tokens) / policy.tokensPerNano());
+                throw new RateLimitExceededException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos) + 1));
+            }
+            if (bucket.state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.updatedAt())))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adresse du client ; X-Forwarded-For n'est lu que si rate-limit.trust-forwarded-for est activé
+     */
+    public String clientIp(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                return forwardedFor.split(",")[0].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * Clé d'un numéro de téléphone : forme E.164, pour que toutes ses écritures partagent le même seau
+     */
+    public static String telephone(String phoneNumber) {
+        String e164 = PhoneNumberNormalizer.normaliserOuNull(phoneNumber);
+        return e164 != null ? e164 : phoneNumber;
+    }
+
+    /**
+     * Retirer les seaux redevenus pleins : la table ne garde que les clés réellement limitées
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void balayer() {
+        int avant = buckets.size();
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> plein(bucket, now));
+        int retires = avant - buckets.size();
+        if (retires > 0) {
+            log.debug("{} seau(x) de limitation retiré(s)", retires);
+        }
+    }
+
+    private Bucket bucket(String key, Policy policy, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            balayer();
+            if (buckets.size() >= maxKeys) {
+                return null;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(policy, now));
+    }
+
+    private boolean plein(Bucket bucket, long now) {
+        State state = bucket.state.get();
+        return now - state.updatedAt() >= bucket.policy.nanosToFill(state.tokens());
+    }
+
+    /**
+     * Trop de requêtes (429), avec l'en-tête Retry-After en secondes
+     */
+    public static class RateLimitExceededException extends ResponseStatusException {
+        private final long retryAfterSeconds;
+
+        public RateLimitExceededException(long retryAfterSeconds) {
+            super(HttpStatus.TOO_MANY_REQUESTS, "Trop de requêtes, réessayez dans " + retryAfterSeconds + " s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return headers;
+        }
+    }
+}
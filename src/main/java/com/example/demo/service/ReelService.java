@@ -5,21 +5,25 @@ import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import com.example.demo.repository.ReelRepository;
 import com.example.demo.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
 
 @Service
 public class ReelService {
@@ -29,37 +33,102 @@ public class ReelService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MediaBlobStore mediaBlobStore;
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private Mp4FaststartService mp4FaststartService;
+
     @Value("${file.upload-dir:uploads/videos}")
     private String uploadDir;
 
+    @Value("${reels.feed.page-size:20}")
+    private int feedPageSize;
+
+    @Value("${reels.feed.max-page-size:50}")
+    private int feedMaxPageSize;
+
+    // Nombre de reels de la page suivante dont la vidéo est signalée au client pour préchargement
+    @Value("${reels.feed.prefetch-count:3}")
+    private int feedPrefetchCount;
+
+    /**
+     * Auteur d'un reel dans le fil : l'avatar est servi par URL au lieu d'être embarqué
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ReelAuthorDto {
+        private Long id;
+        private String firstName;
+        private String photoUrl;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ReelFeedItemDto {
+        private Long id;
+        private String title;
+        private String description;
+        private String originalFilename;
+        private LocalDateTime createdAt;
+        private String videoUrl;
+        private ReelAuthorDto author;
+    }
+
+    /**
+     * Page du fil : nextCursor est null sur la dernière page,
+     * prefetch liste les vidéos des premiers reels de la page suivante
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ReelFeedPageDto {
+        private List<ReelFeedItemDto> items;
+        private String nextCursor;
+        private int pageSize;
+        private List<String> prefetch;
+    }
+
     public Reel createReel(Long userId, String title, String description, MultipartFile videoFile) throws IOException {
+        User user = getReelAuthor(userId);
+
+        // Save file to the shared store: the same clip posted several times is kept once.
+        // The MP4 is rewritten with moov first so playback starts without fetching the tail
+        MediaStore.StoredMedia stored = mediaStore.store(videoFile, Paths.get(uploadDir), ".mp4",
+                mp4FaststartService::rendreProgressif);
+
+        return saveReel(user, title, description, stored, videoFile.getOriginalFilename());
+    }
+
+    /**
+     * Crée un reel à partir d'une vidéo déjà stockée (upload par morceaux)
+     */
+    public Reel createReel(Long userId, String title, String description,
+                           MediaStore.StoredMedia stored, String originalFilename) {
+        return saveReel(getReelAuthor(userId), title, description, stored, originalFilename);
+    }
+
+    /**
+     * Vérifie que l'utilisateur existe et a le droit de publier des reels
+     */
+    public User getReelAuthor(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         if (user.getRole() != Role.COACH && user.getRole() != Role.GYM) {
             throw new RuntimeException("Only coaches and gyms can create reels");
         }
+        return user;
+    }
 
-        // Create directory if it doesn't exist
-        File directory = new File(uploadDir);
-        if (!directory.exists()) {
-            directory.mkdirs();
-        }
-
-        // Generate unique filename
-        String originalFilename = videoFile.getOriginalFilename();
-        String fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-        String filePath = uploadDir + File.separator + uniqueFilename;
-
-        // Save file to disk
-        Path targetLocation = Paths.get(filePath);
-        Files.copy(videoFile.getInputStream(), targetLocation);
-
+    private Reel saveReel(User user, String title, String description,
+                          MediaStore.StoredMedia stored, String originalFilename) {
         Reel reel = new Reel();
         reel.setTitle(title);
         reel.setDescription(description);
-        reel.setVideoPath(filePath);
+        reel.setVideoPath(stored.path().toString());
         reel.setOriginalFilename(originalFilename);
         reel.setUser(user);
 
@@ -72,10 +141,90 @@ public class ReelService {
         return reels;
     }
 
+    /**
+     * Récupère un reel par sa clé primaire
+     */
+    public Optional<Reel> getReelById(Long reelId) {
+        return reelRepository.findById(reelId);
+    }
+
     public List<Reel> getAllReels() {
         return reelRepository.findAll();
     }
 
+    /**
+     * Fil des reels paginé par clé (createdAt, id), du plus récent au plus ancien.
+     * Les lignes de la page suivante nécessaires aux indications de préchargement
+     * sont lues dans la même requête
+     */
+    public ReelFeedPageDto getFeed(String cursor, Integer limit) {
+        int pageSize = limit == null ? feedPageSize : Math.max(1, Math.min(limit, feedMaxPageSize));
+        PageRequest window = PageRequest.of(0, pageSize + Math.max(1, feedPrefetchCount));
+
+        List<ReelRepository.ReelFeedItem> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = reelRepository.findFeed(window);
+        } else {
+            FeedCursor position = decodeCursor(cursor);
+            rows = reelRepository.findFeedAfter(position.createdAt(), position.id(), window);
+        }
+
+        List<ReelFeedItemDto> items = new ArrayList<>();
+        for (ReelRepository.ReelFeedItem row : rows.subList(0, Math.min(pageSize, rows.size()))) {
+            items.add(toFeedItem(row));
+        }
+
+        String nextCursor = null;
+        List<String> prefetch = new ArrayList<>();
+        if (rows.size() > pageSize) {
+            ReelFeedItemDto last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+            for (ReelRepository.ReelFeedItem row : rows.subList(pageSize, Math.min(rows.size(), pageSize + feedPrefetchCount))) {
+                prefetch.add(videoUrl(row.getId()));
+            }
+        }
+        return new ReelFeedPageDto(items, nextCursor, pageSize, prefetch);
+    }
+
+    private ReelFeedItemDto toFeedItem(ReelRepository.ReelFeedItem row) {
+        String photoUrl = Boolean.TRUE.equals(row.getAuthorHasPhoto())
+                ? "/api/auth/users/" + row.getAuthorId() + "/photo"
+                : null;
+        return new ReelFeedItemDto(
+                row.getId(),
+                row.getTitle(),
+                row.getDescription(),
+                row.getOriginalFilename(),
+                row.getCreatedAt(),
+                videoUrl(row.getId()),
+                new ReelAuthorDto(row.getAuthorId(), row.getAuthorFirstName(), photoUrl)
+        );
+    }
+
+    private String videoUrl(Long reelId) {
+        return "/api/reels/video/" + reelId;
+    }
+
+    private record FeedCursor(LocalDateTime createdAt, Long id) {
+    }
+
+    // Curseur opaque pour le client : "createdAt|id" encodé en base64 URL
+    private String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FeedCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new FeedCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+    }
+
     /**
      * Récupère tous les reels avec les informations du créateur
      * Structure adaptée pour correspondre à ce qu'attend le front-end React Native
@@ -101,7 +250,7 @@ public class ReelService {
                 Map<String, Object> authorMap = new HashMap<>();
                 authorMap.put("id", user.getId());
                 authorMap.put("firstName", user.getFirstName());
-                authorMap.put("photo", user.getPhoto());
+                authorMap.put("photo", mediaBlobStore.resolve(user.getPhoto(), user.getPhotoPath()));
 
                 // Ajouter l'objet author au reel
                 reelMap.put("author", authorMap);
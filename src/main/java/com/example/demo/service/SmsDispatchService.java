@@ -0,0 +1,219 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File d'envoi des SMS : la requête enregistre le code puis rend la main, l'appel au
+ * fournisseur se fait sur un pool de threads borné, après le commit.
+ * <ul>
+ *     <li>Un seul SMS en attente par numéro : un nouveau code remplace le texte du précédent
+ *     pas encore parti (l'ancien code n'est de toute façon plus valide)</li>
+ *     <li>Reprise avec délai exponentiel en cas d'échec</li>
+ *     <li>Disjoncteur : après plusieurs échecs consécutifs, les envois sont suspendus un temps,
+ *     puis un seul envoi d'essai décide de la reprise</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SmsDispatchService {
+
+    private final SmsSender smsSender;
+
+    @Value("${sms.dispatch.threads:4}")
+    private int threads;
+
+    @Value("${sms.dispatch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${sms.dispatch.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${sms.dispatch.retry-base-delay-ms:1000}")
+    private long retryBaseDelayMs;
+
+    @Value("${sms.dispatch.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${sms.dispatch.circuit.open-ms:30000}")
+    private long openMs;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledThreadPoolExecutor retryScheduler;
+
+    private final Map<String, SmsTask> enAttente = new ConcurrentHashMap<>();
+
+    // Disjoncteur
+    private final AtomicInteger echecsConsecutifs = new AtomicInteger();
+    private volatile long ouvertJusqua;
+    private final AtomicBoolean essaiEnCours = new AtomicBoolean();
+
+    private final AtomicLong envoyes = new AtomicLong();
+    private final AtomicLong fusionnes = new AtomicLong();
+    private final AtomicLong abandonnes = new AtomicLong();
+
+    private static final class SmsTask {
+        private final String to;
+        private volatile String body;
+        private int attempts;
+
+        private SmsTask(String to, String body) {
+            this.to = to;
+            this.body = body;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sms-dispatch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        retryScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sms-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        executor.shutdown();
+    }
+
+    /**
+     * Mettre un SMS en file. Dans une transaction, il ne part qu'après le commit :
+     * aucun SMS pour un code qui n'a pas été enregistré
+     */
+    public void envoyer(String to, String body) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mettreEnFile(to, body);
+                }
+            });
+        } else {
+            mettreEnFile(to, body);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enAttente", enAttente.size());
+        status.put("envoyes", envoyes.get());
+        status.put("fusionnes", fusionnes.get());
+        status.put("abandonnes", abandonnes.get());
+        status.put("disjoncteurOuvert", System.currentTimeMillis() < ouvertJusqua);
+        status.put("echecsConsecutifs", echecsConsecutifs.get());
+        return status;
+    }
+
+    private void mettreEnFile(String to, String body) {
+        AtomicBoolean nouvelle = new AtomicBoolean();
+        SmsTask task = enAttente.compute(to, (numero, existante) -> {
+            if (existante != null) {
+                existante.body = body;
+                return existante;
+            }
+            nouvelle.set(true);
+            return new SmsTask(numero, body);
+        });
+        if (nouvelle.get()) {
+            soumettre(task);
+        } else {
+            fusionnes.incrementAndGet();
+        }
+    }
+
+    private void soumettre(SmsTask task) {
+        try {
+            executor.execute(() -> traiter(task));
+        } catch (RejectedExecutionException e) {
+            enAttente.remove(task.to, task);
+            abandonnes.incrementAndGet();
+            log.warn("File des SMS pleine, SMS pour {} abandonné", task.to);
+        }
+    }
+
+    private void traiter(SmsTask task) {
+        // Disjoncteur ouvert : on repasse plus tard, sans compter de tentative.
+        // À la fin du délai, un seul envoi d'essai passe ; les autres attendent son résultat
+        boolean essai = echecsConsecutifs.get() >= failureThreshold;
+        if (essai && (System.currentTimeMillis() < ouvertJusqua || !essaiEnCours.compareAndSet(false, true))) {
+            planifier(task, Math.max(ouvertJusqua - System.currentTimeMillis(), retryBaseDelayMs));
+            return;
+        }
+
+        // Retiré de l'attente avant l'envoi : un code demandé pendant l'envoi repart dans un nouveau SMS
+        enAttente.remove(task.to, task);
+        String body = task.body;
+        try {
+            smsSender.send(task.to, body);
+            envoyes.incrementAndGet();
+            echecsConsecutifs.set(0);
+        } catch (RuntimeException e) {
+            task.attempts++;
+            if (echecsConsecutifs.incrementAndGet() >= failureThreshold) {
+                ouvertJusqua = System.currentTimeMillis() + openMs;
+                log.warn("Disjoncteur SMS ouvert pour {} ms après {} échecs consécutifs",
+                        openMs, echecsConsecutifs.get());
+            }
+            reessayer(task, e);
+        } finally {
+            if (essai) {
+                essaiEnCours.set(false);
+            }
+        }
+    }
+
+    private void reessayer(SmsTask task, RuntimeException erreur) {
+        if (task.attempts >= maxAttempts) {
+            abandonnes.incrementAndGet();
+            log.error("SMS pour {} abandonné après {} tentatives : {}", task.to, task.attempts, erreur.getMessage());
+            return;
+        }
+        // Si un SMS plus récent est déjà en attente pour ce numéro, il remplace celui-ci
+        if (enAttente.putIfAbsent(task.to, task) != null) {
+            fusionnes.incrementAndGet();
+            return;
+        }
+        long delai = retryBaseDelayMs << Math.min(task.attempts - 1, 10);
+        log.warn("Échec d'envoi du SMS pour {} (tentative {}), nouvel essai dans {} ms : {}",
+                task.to, task.attempts, delai, erreur.getMessage());
+        planifier(task, delai);
+    }
+
+    private void planifier(SmsTask task, long delaiMs) {
+        try {
+            retryScheduler.schedule(() -> soumettre(task), delaiMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            enAttente.remove(task.to, task);
+            abandonnes.incrementAndGet();
+        }
+    }
+}
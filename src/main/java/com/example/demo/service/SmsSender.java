@@ -0,0 +1,12 @@
+package com.example.demo.service;
+
+/**
+ * Fournisseur d'envoi de SMS. L'implémentation est choisie par sms.provider (twilio ou stub)
+ */
+public interface SmsSender {
+
+    /**
+     * Envoi synchrone ; toute exception est traitée comme un échec temporaire par SmsDispatchService
+     */
+    void send(String to, String body);
+}
@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envoi simulé pour le développement et les tests de charge (sms.provider=stub) :
+ * rien ne part chez Twilio, une latence et un taux d'échec peuvent être simulés
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "sms.provider", havingValue = "stub")
+public class StubSmsSender implements SmsSender {
+
+    @Value("${sms.stub.latency-ms:0}")
+    private long latencyMs;
+
+    // Entre 0 et 1 : proportion d'envois qui échouent, pour éprouver les reprises et le disjoncteur
+    @Value("${sms.stub.failure-rate:0}")
+    private double failureRate;
+
+    private final AtomicLong sent = new AtomicLong();
+
+    @Override
+    public void send(String to, String body) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Envoi interrompu", e);
+            }
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IllegalStateException("Échec simulé");
+        }
+        sent.incrementAndGet();
+        log.info("[SMS simulé] {} : {}", to, body);
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+}
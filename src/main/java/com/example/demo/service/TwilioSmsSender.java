@@ -0,0 +1,36 @@
+package com.example.demo.service;
+
+import com.twilio.Twilio;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "sms.provider", havingValue = "twilio", matchIfMissing = true)
+public class TwilioSmsSender implements SmsSender {
+
+    @Value("${twilio.account-sid}")
+    private String accountSid;
+
+    @Value("${twilio.auth-token}")
+    private String authToken;
+
+    @Value("${twilio.phone-number}")
+    private String fromNumber;
+
+    @PostConstruct
+    public void init() {
+        Twilio.init(accountSid, authToken);
+    }
+
+    @Override
+    public void send(String to, String body) {
+        Message message = Message.creator(new PhoneNumber(to), new PhoneNumber(fromNumber), body).create();
+        log.debug("SMS {} envoyé à {}", message.getSid(), to);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Role;
+import com.example.demo.repository.NotificationRepository;
+import com.example.demo.repository.UnreadCounterRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compteurs de non-lus tenus à jour à l'écriture (table unread_counter) et servis depuis
+ * un cache en mémoire, sans requête sur les notifications ni sur les messages.
+ * <ul>
+ *     <li>notification:&lt;userId&gt; : notifications directes non lues</li>
+ *     <li>annonces:&lt;rôle&gt; : nombre d'annonces publiées pour le rôle</li>
+ *     <li>annonces-lues:&lt;userId&gt; : annonces lues par l'utilisateur</li>
+ *     <li>contact:&lt;coachId&gt; : messages de contact non lus</li>
+ * </ul>
+ * Un job de réconciliation recalcule périodiquement les compteurs depuis les tables sources.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UnreadCounterService {
+
+    private static final String NOTIFICATION = "notification:";
+    private static final String ANNONCES = "annonces:";
+    private static final String ANNONCES_LUES = "annonces-lues:";
+    private static final String CONTACT = "contact:";
+
+    private final UnreadCounterRepository counterRepository;
+    private final UserRepository userRepository;
+    private final NotificationRepository notificationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService jobLeaseService;
+
+    // Les autres instances ne préviennent pas ce cache : une valeur n'est gardée que quelques secondes
+    @Value("${counters.cache.ttl-seconds:15}")
+    private long cacheTtlSeconds;
+
+    @Value("${counters.cache.max-entries:100000}")
+    private int cacheMaxEntries;
+
+    // Rôle évincé par UserService à chaque changement ; le délai couvre les changements faits sur une autre instance
+    @Value("${counters.role-cache.ttl-seconds:60}")
+    private long roleCacheTtlSeconds;
+
+    private record CachedValue(long value, long loadedAt) {
+    }
+
+    private record CachedRole(Role role, long loadedAt) {
+    }
+
+    private final Map<String, CachedValue> cache = new ConcurrentHashMap<>();
+    private final Map<Long, CachedRole> roles = new ConcurrentHashMap<>();
+
+    // Verrous par tranche de clés : un seul chargement en base par clé absente du cache
+    private final Object[] stripes = new Object[64];
+
+    {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Notifications non lues : directes + annonces du rôle pas encore lues
+     */
+    public long getNotificationsNonLues(Long userId) {
+        Role role = getRole(userId);
+        long annoncesNonLues = Math.max(0, lire(ANNONCES + role) - lire(ANNONCES_LUES + userId));
+        return lire(NOTIFICATION + userId) + annoncesNonLues;
+    }
+
+    public long getMessagesNonLus(Long coachId) {
+        return lire(CONTACT + coachId);
+    }
+
+    /**
+     * Rôle d'un utilisateur, mis en cache (NoSuchElementException si l'utilisateur n'existe pas)
+     */
+    public Role getRole(Long userId) {
+        CachedRole cached = roles.get(userId);
+        if (cached != null && !expire(cached.loadedAt(), roleCacheTtlSeconds)) {
+            return cached.role();
+        }
+        Role role = userRepository.findRoleById(userId)
+                .orElseThrow(() -> new NoSuchElementException("Utilisateur non trouvé"));
+        if (roles.size() >= cacheMaxEntries) {
+            roles.clear();
+        }
+        roles.put(userId, new CachedRole(role, System.nanoTime()));
+        return role;
+    }
+
+    /**
+     * Oublier le rôle d'un utilisateur (changement de rôle, suppression), tout de suite et après le commit
+     */
+    public void oublierRole(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        roles.remove(userId);
+        apresCommit(() -> roles.remove(userId));
+    }
+
+    public void notificationCreee(Long userId) {
+        ajouter(NOTIFICATION + userId, 1);
+    }
+
+    public void notificationsLues(Long userId, long count) {
+        if (count > 0) {
+            ajouter(NOTIFICATION + userId, -count);
+        }
+    }
+
+    public void annonceCreee(Role role) {
+        ajouter(ANNONCES + role, 1);
+    }
+
+    public void annoncesLues(Long userId, long count) {
+        if (count > 0) {
+            ajouter(ANNONCES_LUES + userId, count);
+        }
+    }
+
+    /**
+     * Nombre d'annonces lues recalculé depuis le marqueur de lecture (marquage en masse)
+     */
+    public void definirAnnoncesLues(Long userId, long count) {
+        String key = ANNONCES_LUES + userId;
+        counterRepository.definir(key, count);
+        apresCommit(() -> cache.remove(key));
+    }
+
+    public void messageCree(Long coachId) {
+        ajouter(CONTACT + coachId, 1);
+    }
+
+    public void messagesLus(Long coachId, long count) {
+        if (count > 0) {
+            ajouter(CONTACT + coachId, -count);
+        }
+    }
+
+    /**
+     * Recalculer tous les compteurs depuis les tables sources pour corriger les écarts
+     * (écritures hors application, purge, crash entre deux écritures...).
+     * Une seule instance réconcilie à la fois ; les autres vident seulement leur cache
+     */
+    @Scheduled(fixedDelayString = "${counters.reconcile-interval-ms:600000}",
+            initialDelayString = "${counters.reconcile-initial-delay-ms:60000}")
+    public void reconcilier() {
+        if (!jobLeaseService.executer("unread-counters-reconcile", Duration.ofMinutes(10), this::reconcilierSousBail)) {
+            cache.clear();
+            roles.clear();
+        }
+    }
+
+    private void reconcilierSousBail(JobLeaseService.Lease lease) {
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            jobLeaseService.exiger(lease);
+            remplacer(NOTIFICATION, "SELECT CONCAT('" + NOTIFICATION + "', user_id), COUNT(*), NOW() " +
+                    "FROM notifications WHERE user_id IS NOT NULL AND lue = false GROUP BY user_id");
+            remplacer(ANNONCES, "SELECT CONCAT('" + ANNONCES + "', audience), COUNT(*), NOW() " +
+                    "FROM notifications WHERE user_id IS NULL AND audience IS NOT NULL GROUP BY audience");
+            remplacer(CONTACT, "SELECT CONCAT('" + CONTACT + "', coach_id), COUNT(*), NOW() " +
+                    "FROM contact_message WHERE lu = false GROUP BY coach_id");
+            reconcilierAnnoncesLues();
+        });
+        cache.clear();
+        roles.clear();
+        log.info("Compteurs de non-lus réconciliés en {} ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void remplacer(String prefix, String select) {
+        jdbcTemplate.update("DELETE FROM unread_counter WHERE counter_key LIKE ?", prefix + "%");
+        jdbcTemplate.update("INSERT INTO unread_counter (counter_key, counter_value, updated_at) " + select);
+    }
+
+    /**
+     * Annonces lues = annonces sous le seuil du marqueur + bits posés au-delà
+     */
+    private void reconcilierAnnoncesLues() {
+        Map<Role, List<Long>> annonceIds = new EnumMap<>(Role.class);
+        for (Role role : Role.values()) {
+            annonceIds.put(role, notificationRepository.findIdsAnnoncesApres(role, 0L));
+        }
+
+        List<Object[]> valeurs = new ArrayList<>();
+        jdbcTemplate.query("SELECT m.user_id, m.last_read_id, m.read_bitmap, u.role " +
+                "FROM notification_read_marker m JOIN `user` u ON u.id = m.user_id", rs -> {
+            List<Long> ids = annonceIds.get(Role.valueOf(rs.getString("role")));
+            if (ids == null) {
+                return;
+            }
+            int position = Collections.binarySearch(ids, rs.getLong("last_read_id"));
+            long sousLeSeuil = position >= 0 ? position + 1 : -position - 1;
+            byte[] bitmap = rs.getBytes("read_bitmap");
+            long lues = sousLeSeuil + (bitmap == null ? 0 : BitSet.valueOf(bitmap).cardinality());
+            valeurs.add(new Object[]{ANNONCES_LUES + rs.getLong("user_id"), lues});
+        });
+
+        jdbcTemplate.update("DELETE FROM unread_counter WHERE counter_key LIKE ?", ANNONCES_LUES + "%");
+        jdbcTemplate.batchUpdate("INSERT INTO unread_counter (counter_key, counter_value, updated_at) " +
+                "VALUES (?, ?, NOW())", valeurs);
+    }
+
+    private long lire(String key) {
+        CachedValue cached = cache.get(key);
+        if (cached != null && !expire(cached.loadedAt(), cacheTtlSeconds)) {
+            return cached.value();
+        }
+        synchronized (stripes[Math.floorMod(key.hashCode(), stripes.length)]) {
+            cached = cache.get(key);
+            if (cached != null && !expire(cached.loadedAt(), cacheTtlSeconds)) {
+                return cached.value();
+            }
+            long value = counterRepository.findValue(key).orElse(0L);
+            if (cache.size() >= cacheMaxEntries) {
+                cache.clear();
+            }
+            cache.put(key, new CachedValue(value, System.nanoTime()));
+            return value;
+        }
+    }
+
+    private boolean expire(long loadedAt, long ttlSeconds) {
+        return System.nanoTime() - loadedAt > TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    private void ajouter(String key, long delta) {
+        counterRepository.ajouter(key, delta);
+        apresCommit(() -> cache.remove(key));
+    }
+
+    // Le cache n'est invalidé qu'une fois l'écriture validée, sinon un autre thread relirait l'ancienne valeur
+    private void apresCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
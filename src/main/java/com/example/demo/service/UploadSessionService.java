@@ -0,0 +1,348 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ExerciseVideo;
+import com.example.demo.model.Reel;
+import com.example.demo.model.Role;
+import com.example.demo.model.UploadSession;
+import com.example.demo.model.UploadStatus;
+import com.example.demo.model.UploadTarget;
+import com.example.demo.model.User;
+import com.example.demo.repository.UploadSessionRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uploads de vidéos par morceaux, reprenables après une coupure réseau.
+ * Le client ouvre une session, envoie des morceaux bruts (octet-stream) à la position attendue
+ * avec leur SHA-256, puis valide la session. Les morceaux sont écrits directement dans un fichier
+ * partiel situé sous la racine de destination : au commit, ce fichier est déplacé dans le
+ * stockage média sans être recopié.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final String PART_DIRECTORY = ".uploads";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserRepository userRepository;
+    private final MediaStore mediaStore;
+    private final CourseService courseService;
+    private final ReelService reelService;
+    private final Mp4FaststartService mp4FaststartService;
+
+    @Value("${upload.path.video}")
+    private String videoUploadPath;
+
+    @Value("${file.upload-dir:uploads/videos}")
+    private String reelUploadDir;
+
+    // Taille maximale d'un morceau (16 Mo par défaut)
+    @Value("${upload.chunk.max-bytes:16777216}")
+    private long maxChunkBytes;
+
+    // Taille maximale d'un fichier complet (4 Go par défaut)
+    @Value("${upload.max-size-bytes:4294967296}")
+    private long maxUploadBytes;
+
+    // Une session sans nouveau morceau pendant ce délai est abandonnée
+    @Value("${upload.session.ttl-hours:24}")
+    private long sessionTtlHours;
+
+    // Sessions en cours d'écriture : un seul morceau ou commit à la fois par session
+    private final Set<String> sessionsOccupees = ConcurrentHashMap.newKeySet();
+
+    public long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    /**
+     * Ouvrir une session d'upload
+     */
+    public UploadSession ouvrirSession(Long userId, UploadTarget target, String originalFilename, long totalSize)
+            throws IOException {
+        if (totalSize <= 0 || totalSize > maxUploadBytes) {
+            throw new IllegalArgumentException("Taille de fichier invalide : " + totalSize);
+        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new NoSuchElementException("Utilisateur non trouvé"));
+        if (target == UploadTarget.EXERCISE_VIDEO && user.getRole() != Role.COACH) {
+            throw new IllegalArgumentException("Seuls les coachs peuvent uploader des vidéos d'exercice");
+        }
+        if (target == UploadTarget.REEL && user.getRole() != Role.COACH && user.getRole() != Role.GYM) {
+            throw new IllegalArgumentException("Seuls les coachs et les salles peuvent publier des reels");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path partDirectory = rootOf(target).resolve(PART_DIRECTORY);
+        Files.createDirectories(partDirectory);
+        Path partFile = Files.createFile(partDirectory.resolve(id + ".part"));
+
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.setUserId(userId);
+        session.setTarget(target);
+        session.setOriginalFilename(originalFilename);
+        session.setTotalSize(totalSize);
+        session.setPartPath(partFile.toString());
+        return uploadSessionRepository.save(session);
+    }
+
+    /**
+     * Récupérer une session par son ID
+     */
+    public UploadSession getSession(String id) {
+        return uploadSessionRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Session d'upload non trouvée"));
+    }
+
+    /**
+     * Écrire un morceau à la position donnée. La position doit être égale au nombre d'octets
+     * déjà reçus ; un morceau dont l'empreinte ne correspond pas est effacé et peut être renvoyé
+     */
+    public UploadSession ecrireMorceau(String id, long offset, String chunkSha256, InputStream body)
+            throws IOException {
+        occuper(id);
+        try {
+            UploadSession session = getSessionEnCours(id);
+            if (offset != session.getReceivedBytes()) {
+                throw new IllegalStateException("Position attendue : " + session.getReceivedBytes());
+            }
+
+            long maxBytes = Math.min(maxChunkBytes, session.getTotalSize() - offset);
+            MessageDigest digest = newSha256();
+            long written;
+            try (FileChannel channel = FileChannel.open(Paths.get(session.getPartPath()), StandardOpenOption.WRITE)) {
+                try {
+                    written = copier(body, channel, offset, maxBytes, digest);
+                    if (written == 0) {
+                        throw new IllegalArgumentException("Morceau vide");
+                    }
+                    if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(chunkSha256)) {
+                        throw new IllegalArgumentException("Empreinte SHA-256 du morceau invalide");
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Le morceau rejeté ou interrompu est effacé : le client le renvoie à la même position
+                    channel.truncate(offset);
+                    throw e;
+                }
+            }
+
+            session.setReceivedBytes(offset + written);
+            return uploadSessionRepository.save(session);
+        } finally {
+            sessionsOccupees.remove(id);
+        }
+    }
+
+    /**
+     * Valider une session de reel : le fichier complet devient la vidéo d'un nouveau reel
+     */
+    public Reel validerReel(String id, String title, String description, String sha256) throws IOException {
+        occuper(id);
+        try {
+            UploadSession session = getSessionComplete(id, UploadTarget.REEL);
+            reelService.getReelAuthor(session.getUserId());
+
+            MediaStore.StoredMedia stored = stockerFichier(session, sha256);
+            try {
+                Reel reel = reelService.createReel(session.getUserId(), title, description,
+                        stored, session.getOriginalFilename());
+                terminer(session);
+                return reel;
+            } catch (RuntimeException e) {
+                mediaStore.release(stored.path());
+                abandonner(session);
+                throw e;
+            }
+        } finally {
+            sessionsOccupees.remove(id);
+        }
+    }
+
+    /**
+     * Valider une session de vidéo d'exercice : le fichier complet est rattaché à l'exercice
+     */
+    public ExerciseVideo validerVideoExercice(String id, Long exerciseId, String sha256) throws IOException {
+        occuper(id);
+        try {
+            UploadSession session = getSessionComplete(id, UploadTarget.EXERCISE_VIDEO);
+            // Propriétaire vérifié avant de consommer le fichier partiel
+            courseService.getExerciseOfCoach(exerciseId, session.getUserId());
+
+            MediaStore.StoredMedia stored = stockerFichier(session, sha256);
+            try {
+                ExerciseVideo video = courseService.attachExerciseVideo(exerciseId, session.getUserId(),
+                        stored, session.getOriginalFilename());
+                terminer(session);
+                return video;
+            } catch (RuntimeException e) {
+                mediaStore.release(stored.path());
+                abandonner(session);
+                throw e;
+            }
+        } finally {
+            sessionsOccupees.remove(id);
+        }
+    }
+
+    /**
+     * Abandonner une session et supprimer le fichier partiel
+     */
+    public void annulerSession(String id) throws IOException {
+        occuper(id);
+        try {
+            UploadSession session = getSessionEnCours(id);
+            Files.deleteIfExists(Paths.get(session.getPartPath()));
+            session.setStatus(UploadStatus.ABORTED);
+            session.setPartPath(null);
+            uploadSessionRepository.save(session);
+        } finally {
+            sessionsOccupees.remove(id);
+        }
+    }
+
+    /**
+     * Supprimer les fichiers partiels des sessions abandonnées
+     */
+    @Scheduled(fixedDelayString = "${upload.session.cleanup-interval-ms:3600000}")
+    public void nettoyerSessionsExpirees() {
+        List<UploadSession> expirees = uploadSessionRepository.findByStatusAndUpdatedAtBefore(
+                UploadStatus.IN_PROGRESS, LocalDateTime.now().minusHours(sessionTtlHours));
+        for (UploadSession session : expirees) {
+            if (!sessionsOccupees.add(session.getId())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(Paths.get(session.getPartPath()));
+                session.setStatus(UploadStatus.EXPIRED);
+                session.setPartPath(null);
+                uploadSessionRepository.save(session);
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer le fichier partiel {}: {}", session.getPartPath(), e.getMessage());
+            } finally {
+                sessionsOccupees.remove(session.getId());
+            }
+        }
+        if (!expirees.isEmpty()) {
+            log.info("{} session(s) d'upload expirée(s) nettoyée(s)", expirees.size());
+        }
+    }
+
+    /**
+     * Ranger le fichier complet. Si l'empreinte ne correspond pas, le fichier partiel est vidé
+     * et la session repart de zéro : le client renvoie tous les morceaux
+     */
+    private MediaStore.StoredMedia stockerFichier(UploadSession session, String sha256) throws IOException {
+        String extension = MediaStore.extensionOf(session.getOriginalFilename(), ".mp4");
+        Path partFile = Paths.get(session.getPartPath());
+        try {
+            return mediaStore.adopt(partFile, rootOf(session.getTarget()), extension, sha256,
+                    mp4FaststartService::rendreProgressif);
+        } catch (IllegalArgumentException e) {
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+            session.setReceivedBytes(0L);
+            uploadSessionRepository.save(session);
+            throw new IllegalArgumentException(e.getMessage() + " : l'upload doit être recommencé", e);
+        }
+    }
+
+    private void terminer(UploadSession session) {
+        session.setStatus(UploadStatus.COMMITTED);
+        session.setPartPath(null);
+        uploadSessionRepository.save(session);
+    }
+
+    // Le fichier partiel a été consommé mais l'entité n'a pas pu être créée : la session ne peut plus aboutir
+    private void abandonner(UploadSession session) {
+        session.setStatus(UploadStatus.ABORTED);
+        session.setPartPath(null);
+        uploadSessionRepository.save(session);
+    }
+
+    private UploadSession getSessionEnCours(String id) {
+        UploadSession session = getSession(id);
+        if (session.getStatus() != UploadStatus.IN_PROGRESS) {
+            throw new IllegalStateException("Session d'upload " + session.getStatus());
+        }
+        return session;
+    }
+
+    private UploadSession getSessionComplete(String id, UploadTarget target) {
+        UploadSession session = getSessionEnCours(id);
+        if (session.getTarget() != target) {
+            throw new IllegalArgumentException("Cette session n'est pas destinée à " + target);
+        }
+        if (!session.getReceivedBytes().equals(session.getTotalSize())) {
+            throw new IllegalStateException("Upload incomplet : " + session.getReceivedBytes()
+                    + "/" + session.getTotalSize() + " octets reçus");
+        }
+        return session;
+    }
+
+    private void occuper(String id) {
+        if (!sessionsOccupees.add(id)) {
+            throw new IllegalStateException("Une autre requête est en cours sur cette session");
+        }
+    }
+
+    private Path rootOf(UploadTarget target) {
+        return target == UploadTarget.REEL ? Paths.get(reelUploadDir) : Paths.get(videoUploadPath);
+    }
+
+    /**
+     * Copier le corps de la requête dans le fichier à partir de la position donnée,
+     * en refusant tout ce qui dépasse maxBytes
+     */
+    private long copier(InputStream in, FileChannel channel, long offset, long maxBytes, MessageDigest digest)
+            throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (written + read > maxBytes) {
+                throw new IllegalArgumentException("Morceau trop grand (maximum " + maxBytes + " octets)");
+            }
+            digest.update(buffer, 0, read);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer, offset + written + byteBuffer.position());
+            }
+            written += read;
+        }
+        return written;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.demo.service;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.util.PhoneNumberNormalizer;
 import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.Pattern;
@@ -17,7 +18,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -34,11 +34,34 @@ public class UserService {
     private UserRepository userRepository;
 
     @Autowired
-    private TwilioService twilioService;
+    private SmsDispatchService smsDispatchService;
+
+    @Autowired
+    private PhoneNumberBackfillService phoneBackfillService;
+
+    @Autowired
+    private AuthenticatedUserService authenticatedUserService;
+
+    @Autowired
+    private OtpService otpService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    // Clés des codes à usage unique, préfixées par leur usage
+    private static final String OTP_INSCRIPTION = "inscription:";
+    private static final String OTP_CONNEXION = "connexion:";
+    private static final String OTP_CHANGEMENT_NUMERO = "changement-numero:";
 
     @Autowired
     private JwtTokenService jwtTokenService;
 
+    @Autowired
+    private MediaBlobStore mediaBlobStore;
+
     private static final String GYMZER = "GYMZER";
     private static final String ADMIN = "ADMIN";
     private static final String GYM = "GYM";
@@ -50,21 +73,28 @@ public class UserService {
         String formattedPhoneNumber = formatPhoneNumber(phoneNumber);
         Role role = validateRole(roleString);
 
-        Optional<User> existingUser = userRepository.findByPhoneNumber(formattedPhoneNumber);
+        Optional<User> existingUser = userRepository.findByPhoneE164(formattedPhoneNumber);
+        if (existingUser.isEmpty() && !phoneBackfillService.isTermine()) {
+            existingUser = userRepository.findFirstByPhoneNumberIn(variantes(formattedPhoneNumber));
+        }
         if (existingUser.isPresent() && existingUser.get().isVerified()) {
             logger.warn("Le numéro {} est déjà vérifié.", formattedPhoneNumber);
             throw new IllegalArgumentException("Ce numéro est déjà vérifié.");
         }
 
-        String verificationCode = generateVerificationCode();
         User user = existingUser.orElseGet(User::new);
         user.setPhoneNumber(formattedPhoneNumber);
-        user.setVerificationCode(verificationCode);
         user.setVerified(false);
         user.setRole(role);
         userRepository.save(user);
+        authenticatedUserService.invalider(user.getId());
+        unreadCounterService.oublierRole(user.getId());
+        // Compte pas encore vérifié : les annonces déjà publiées pour le rôle ne comptent pas comme non lues
+        notificationService.initialiserMarqueur(user.getId(), role);
+
+        String verificationCode = otpService.generer(OTP_INSCRIPTION + formattedPhoneNumber, null);
 
-        twilioService.sendSMS(formattedPhoneNumber, "Votre code de vérification : " + verificationCode);
+        smsDispatchService.envoyer(formattedPhoneNumber, "Votre code de vérification : " + verificationCode);
         logger.info("Code envoyé au : {} avec le rôle : {}", formattedPhoneNumber, role);
         return verificationCode;
     }
@@ -82,64 +112,54 @@ public class UserService {
         String formattedPhoneNumber = formatPhoneNumber(phoneNumber);
         User user = findUserByPhoneNumber(formattedPhoneNumber);
 
-        if (!verificationCode.equals(user.getVerificationCode())) {
+        if (otpService.verifier(OTP_INSCRIPTION + formattedPhoneNumber, verificationCode).isEmpty()) {
             logger.warn("Code incorrect pour : {}", formattedPhoneNumber);
             return null;
         }
 
         user.setVerified(true);
-        user.setVerificationCode(null);
         userRepository.save(user);
+        authenticatedUserService.invalider(user.getId());
         logger.info("Numéro {} vérifié", formattedPhoneNumber);
         return jwtTokenService.generateToken(user);
     }
 
+    /**
+     * Une seule recherche indexée sur le numéro canonique (phone_e164)
+     */
     public User findUserByPhoneNumber(String phoneNumber) {
-        logger.info("Searching for user with phone number: {}", phoneNumber);
-
-        Optional<User> user = userRepository.findByPhoneNumber(phoneNumber);
-        logger.info("User found with exact match: {}", user.isPresent());
-
-        if (user.isEmpty() && phoneNumber.startsWith("+")) {
-            user = userRepository.findByPhoneNumber(phoneNumber.substring(1));
-            logger.info("User found after removing '+': {}", user.isPresent());
-        }
-
-        if (user.isEmpty() && !phoneNumber.startsWith("+")) {
-            user = userRepository.findByPhoneNumber("+" + phoneNumber);
-            logger.info("User found after adding '+': {}", user.isPresent());
+        String e164 = PhoneNumberNormalizer.normaliser(phoneNumber);
+        Optional<User> user = userRepository.findByPhoneE164(e164);
+        if (user.isEmpty() && !phoneBackfillService.isTermine()) {
+            // Utilisateur pas encore rempli : toutes les anciennes formes en une requête
+            user = userRepository.findFirstByPhoneNumberIn(variantes(e164));
         }
 
         return user.orElseThrow(() -> {
-            logger.warn("No user found for phone number: {}", phoneNumber);
+            logger.debug("Aucun utilisateur pour le numéro {}", e164);
             return new IllegalArgumentException("Utilisateur non trouvé");
         });
     }
 
-    private String generateVerificationCode() {
-        return String.valueOf(100000 + new SecureRandom().nextInt(900000));
+    private boolean telephoneExiste(String e164) {
+        return userRepository.existsByPhoneE164(e164)
+                || !phoneBackfillService.isTermine() && userRepository.existsByPhoneNumberIn(variantes(e164));
     }
 
-    public String formatPhoneNumber(String phoneNumber) {
-        if (phoneNumber == null || phoneNumber.trim().isEmpty()) {
-            logger.error("Numéro vide");
-            throw new IllegalArgumentException("Numéro invalide");
-        }
-
-        phoneNumber = phoneNumber.replaceAll("[^\\d+]", "");
-        if (!phoneNumber.matches("^\\+?\\d{1,3}\\d{4,14}$")) {
-            logger.error("Format invalide : {}", phoneNumber);
-            throw new IllegalArgumentException("Numéro invalide");
-        }
+    private static List<String> variantes(String e164) {
+        return List.of(e164, e164.substring(1));
+    }
 
-        return phoneNumber;
+    /**
+     * Forme canonique E.164 du numéro, IllegalArgumentException s'il est invalide
+     */
+    public String formatPhoneNumber(String phoneNumber) {
+        return PhoneNumberNormalizer.normaliser(phoneNumber);
     }
 
     public boolean checkPhoneNumberExists(String phoneNumber) {
-        String normalized = phoneNumber.replaceAll("^\\+", "");
-        boolean exists = userRepository.existsByPhoneNumber(normalized);
-        logger.info("Numéro {} existe: {}", normalized, exists);
-        return exists;
+        String e164 = PhoneNumberNormalizer.normaliserOuNull(phoneNumber);
+        return e164 != null && telephoneExiste(e164);
     }
 
     public String generateTokenAfterVerification(String phoneNumber) {
@@ -150,26 +170,25 @@ public class UserService {
         return jwtTokenService.generateToken(user);
     }
 
+    /**
+     * Le code de connexion est gardé par OtpService : la ligne de l'utilisateur n'est pas modifiée
+     */
     public String sendLoginCode(String phoneNumber) {
         User user = findUserByPhoneNumber(phoneNumber);
         if (!user.isVerified()) {
             throw new IllegalArgumentException("Compte non vérifié");
         }
 
-        String loginCode = generateVerificationCode();
-        user.setVerificationCode(loginCode);
-        userRepository.save(user);
-        twilioService.sendSMS(phoneNumber, "Code de connexion: " + loginCode);
+        String loginCode = otpService.generer(OTP_CONNEXION + formatPhoneNumber(phoneNumber), null);
+        smsDispatchService.envoyer(phoneNumber, "Code de connexion: " + loginCode);
         return loginCode;
     }
 
     public String verifyLoginCode(String phoneNumber, String code) {
         User user = findUserByPhoneNumber(phoneNumber);
-        if (!code.equals(user.getVerificationCode())) {
+        if (otpService.verifier(OTP_CONNEXION + formatPhoneNumber(phoneNumber), code).isEmpty()) {
             throw new IllegalArgumentException("Code invalide");
         }
-        user.setVerificationCode(null);
-        userRepository.save(user);
         return jwtTokenService.generateToken(user);
     }
 
@@ -189,12 +208,33 @@ public class UserService {
             user.setEmail(profileDto.getEmail());
         }
         if (profileDto.getPhoto() != null) {
-            user.setPhoto(profileDto.getPhoto());
+            user.setPhotoPath(mediaBlobStore.store(profileDto.getPhoto()));
         } else {
-            user.setPhoto(null);
+            user.setPhotoPath(null);
         }
+        user.setPhoto(null);
 
-        return new UserProfileDto(userRepository.save(user));
+        authenticatedUserService.invalider(user.getId());
+        return toUserProfileDto(userRepository.save(user));
+    }
+
+    /**
+     * Photo de l'utilisateur : fichier du stockage média, ou ancien BLOB pendant la migration
+     */
+    public byte[] getUserPhoto(User user) {
+        return mediaBlobStore.resolve(user.getPhoto(), user.getPhotoPath());
+    }
+
+    private UserProfileDto toUserProfileDto(User user) {
+        return new UserProfileDto(user, getUserPhoto(user));
+    }
+
+    private CoachProfileDto toCoachProfileDto(User user) {
+        return new CoachProfileDto(user, getUserPhoto(user));
+    }
+
+    public GymProfileDto toGymProfileDto(User user) {
+        return new GymProfileDto(user, user.getTypeCoaching(), user.getBio(), getUserPhoto(user));
     }
 
 
@@ -211,7 +251,7 @@ public class UserService {
     public List<CoachProfileDto> getAllCoachProfiles() {
         List<User> coaches = userRepository.findByRole(Role.COACH);
         return coaches.stream()
-                .map(CoachProfileDto::new)
+                .map(this::toCoachProfileDto)
                 .collect(Collectors.toList());
     }
 
@@ -229,7 +269,7 @@ public class UserService {
             throw new IllegalArgumentException("L'utilisateur avec l'ID " + id + " n'est pas un coach.");
         }
 
-        return new CoachProfileDto(coach);
+        return toCoachProfileDto(coach);
     }
 
 
@@ -244,11 +284,15 @@ public class UserService {
         private final byte[] photo;
 
         public UserProfileDto(User user) {
+            this(user, user.getPhoto());
+        }
+
+        public UserProfileDto(User user, byte[] photo) {
             this.phoneNumber = user.getPhoneNumber();
             this.firstName = user.getFirstName();
             this.email = user.getEmail();
             this.role = user.getRole();
-            this.photo = user.getPhoto();
+            this.photo = photo;
         }
     }
 
@@ -306,11 +350,15 @@ public class UserService {
         private final String email; // Ajout du champ email
 
         public CoachProfileDto(User user) {
+            this(user, user.getPhoto());
+        }
+
+        public CoachProfileDto(User user, byte[] photo) {
             this.id = user.getId();
             this.phoneNumber = user.getPhoneNumber();
             this.firstName = user.getFirstName();
             this.bio = user.getBio();
-            this.photo = user.getPhoto();
+            this.photo = photo;
             this.fb = user.getFb();
             this.insta = user.getInsta();
             this.tiktok = user.getTiktok();
@@ -353,7 +401,8 @@ public class UserService {
             user.setBio(profileDto.getBio());
         }
         if (profileDto.getPhoto() != null) {
-            user.setPhoto(profileDto.getPhoto());
+            user.setPhotoPath(mediaBlobStore.store(profileDto.getPhoto()));
+            user.setPhoto(null);
         }
         if (profileDto.getFb() != null) {
             user.setFb(profileDto.getFb());
@@ -408,7 +457,8 @@ public class UserService {
         }
 
         logger.info("Mise à jour du profil coach pour : {}", phoneNumber);
-        return new CoachProfileDto(userRepository.save(user));
+        authenticatedUserService.invalider(user.getId());
+        return toCoachProfileDto(userRepository.save(user));
     }
     ////////////comentaire
 
@@ -429,11 +479,15 @@ public class UserService {
     }
 
     public User saveUser(User user) {
+        authenticatedUserService.invalider(user.getId());
+        unreadCounterService.oublierRole(user.getId());
         return userRepository.save(user);
     }
 
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        authenticatedUserService.invalider(id);
+        unreadCounterService.oublierRole(id);
     }
 
     /////////// upodate profil user
@@ -448,15 +502,16 @@ public class UserService {
 
         try {
             if (photoFile != null && !photoFile.isEmpty()) {
-                user.setPhoto(photoFile.getBytes());
+                user.setPhotoPath(mediaBlobStore.store(photoFile.getBytes()));
                 logger.info("Photo mise à jour pour l'utilisateur : {}", phoneNumber);
             } else {
-                user.setPhoto(null);
+                user.setPhotoPath(null);
                 logger.info("Photo supprimée pour l'utilisateur : {}", phoneNumber);
             }
+            user.setPhoto(null);
 
             userRepository.save(user);
-            return new UserProfileDto(user);
+            return toUserProfileDto(user);
         } catch (java.io.IOException e) {
             logger.error("Erreur lors du traitement de la photo pour l'utilisateur {} : {}", phoneNumber, e.getMessage());
             throw new RuntimeException("Erreur lors du traitement de la photo", e);
@@ -475,21 +530,16 @@ public class UserService {
 
         // Vérifier que le nouveau numéro n'est pas déjà utilisé
         String formattedNewPhoneNumber = formatPhoneNumber(newPhoneNumber);
-        if (userRepository.existsByPhoneNumber(formattedNewPhoneNumber)) {
+        if (telephoneExiste(formattedNewPhoneNumber)) {
             logger.warn("Tentative de changement vers un numéro déjà utilisé : {}", formattedNewPhoneNumber);
             throw new IllegalArgumentException("Ce numéro est déjà utilisé par un autre compte");
         }
 
-        // Générer un code de vérification
-        String verificationCode = generateVerificationCode();
-
-        // Stocker temporairement le nouveau numéro et le code dans l'entité utilisateur
-        user.setTempPhoneNumber(formattedNewPhoneNumber);
-        user.setVerificationCode(verificationCode);
-        userRepository.save(user);
+        // Le nouveau numéro est associé au code, en attendant la confirmation
+        String verificationCode = otpService.generer(OTP_CHANGEMENT_NUMERO + user.getId(), formattedNewPhoneNumber);
 
         // Envoyer le code de vérification au nouveau numéro
-        twilioService.sendSMS(formattedNewPhoneNumber, "Votre code de vérification pour changer de numéro : " + verificationCode);
+        smsDispatchService.envoyer(formattedNewPhoneNumber, "Votre code de vérification pour changer de numéro : " + verificationCode);
 
         logger.info("Code de vérification envoyé au nouveau numéro : {}", formattedNewPhoneNumber);
         return verificationCode;
@@ -500,27 +550,26 @@ public class UserService {
         // Vérifier que l'utilisateur existe
         User user = findUserByPhoneNumber(currentPhoneNumber);
 
-        // Vérifier que l'utilisateur a un numéro temporaire en attente
-        if (user.getTempPhoneNumber() == null) {
-            logger.warn("Tentative de confirmation sans changement initié : {}", currentPhoneNumber);
-            throw new IllegalStateException("Aucun changement de numéro n'a été initié");
-        }
+        // Vérifier le code et récupérer le nouveau numéro en attente
+        String newPhoneNumber = otpService.verifier(OTP_CHANGEMENT_NUMERO + user.getId(), verificationCode)
+                .map(OtpStore.Otp::payload)
+                .orElseThrow(() -> {
+                    logger.warn("Code de vérification incorrect pour le changement de numéro : {}", currentPhoneNumber);
+                    return new IllegalArgumentException("Code de vérification incorrect ou expiré");
+                });
 
-        // Vérifier le code
-        if (!verificationCode.equals(user.getVerificationCode())) {
-            logger.warn("Code de vérification incorrect pour le changement de numéro : {}", currentPhoneNumber);
-            throw new IllegalArgumentException("Code de vérification incorrect");
+        // Le numéro a pu être pris depuis l'envoi du code
+        if (telephoneExiste(newPhoneNumber)) {
+            throw new IllegalArgumentException("Ce numéro est déjà utilisé par un autre compte");
         }
 
         // Mettre à jour le numéro de téléphone
-        String newPhoneNumber = user.getTempPhoneNumber();
         user.setPhoneNumber(newPhoneNumber);
-        user.setTempPhoneNumber(null);
-        user.setVerificationCode(null);
         userRepository.save(user);
+        authenticatedUserService.invalider(user.getId());
 
         logger.info("Numéro de téléphone changé avec succès de {} à {}", currentPhoneNumber, newPhoneNumber);
-        return new UserProfileDto(user);
+        return toUserProfileDto(user);
     }
 
 
@@ -569,9 +618,10 @@ public class UserService {
 
         // Enregistrer les modifications
         User updatedUser = userRepository.save(user);
+        authenticatedUserService.invalider(userId);
         logger.info("Profil utilisateur mis à jour pour l'utilisateur ID: {}", userId);
 
-        return new UserProfileDto(updatedUser);
+        return toUserProfileDto(updatedUser);
     }
 
     @Getter
@@ -605,11 +655,15 @@ public class UserService {
 
         // Updated constructor
         public GymProfileDto(User user, String typeCoaching, String bio) {
+            this(user, typeCoaching, bio, user.getPhoto());
+        }
+
+        public GymProfileDto(User user, String typeCoaching, String bio, byte[] photo) {
             this.id = user.getId();
             this.firstName = user.getFirstName();
             this.phoneNumber = user.getPhoneNumber();
             this.email = user.getEmail();
-            this.photo = user.getPhoto();
+            this.photo = photo;
             this.typeCoaching = typeCoaching;
             this.bio = bio;
             this.address = user.getAddress(); // Get address from user
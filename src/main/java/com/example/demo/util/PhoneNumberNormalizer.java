@@ -0,0 +1,62 @@
+package com.example.demo.util;
+
+/**
+ * Forme canonique E.164 d'un numéro de téléphone : "+" suivi uniquement de chiffres.
+ * Un seul passage sur la chaîne, sans expression régulière : espaces, tirets, points
+ * et parenthèses sont ignorés, le "+" n'est accepté qu'en tête et ajouté s'il manque.
+ */
+public final class PhoneNumberNormalizer {
+
+    // Bornes de l'ancienne validation (indicatif de 1 à 3 chiffres + 4 à 14 chiffres)
+    private static final int MIN_DIGITS = 5;
+    private static final int MAX_DIGITS = 17;
+
+    private PhoneNumberNormalizer() {
+    }
+
+    /**
+     * @throws IllegalArgumentException si le numéro est vide ou invalide
+     */
+    public static String normaliser(String phoneNumber) {
+        if (phoneNumber == null) {
+            throw new IllegalArgumentException("Numéro invalide");
+        }
+        int length = phoneNumber.length();
+        char[] digits = new char[MAX_DIGITS + 1];
+        digits[0] = '+';
+        int count = 0;
+        boolean debut = true;
+        for (int i = 0; i < length; i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (count == MAX_DIGITS) {
+                    throw new IllegalArgumentException("Numéro invalide");
+                }
+                digits[++count] = c;
+                debut = false;
+            } else if (c == '+') {
+                if (!debut) {
+                    throw new IllegalArgumentException("Numéro invalide");
+                }
+                debut = false;
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')' && c != '\t') {
+                throw new IllegalArgumentException("Numéro invalide");
+            }
+        }
+        if (count < MIN_DIGITS) {
+            throw new IllegalArgumentException("Numéro invalide");
+        }
+        return new String(digits, 0, count + 1);
+    }
+
+    /**
+     * Variante qui retourne null au lieu de lever une exception
+     */
+    public static String normaliserOuNull(String phoneNumber) {
+        try {
+            return normaliser(phoneNumber);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}